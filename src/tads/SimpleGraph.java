@@ -14,11 +14,11 @@ import java.util.*;
 public class SimpleGraph<V, E> extends MutableGraph<V, E> implements Graph<V, E>, Serializable {
 
     private int edgesCount;
-    private HashMap<V, Vertex<V>> vertexList;
+    private Map<V, Vertex<V>> vertexList;      //insertion ordered, so that iterating the graph is reproducible
 
     public SimpleGraph() {
         this.edgesCount = 0;
-        vertexList = new HashMap<>();
+        vertexList = new LinkedHashMap<>();
     }
 
     private boolean containsVertex(Vertex<V> vertex) {
@@ -54,7 +54,7 @@ public class SimpleGraph<V, E> extends MutableGraph<V, E> implements Graph<V, E>
     }
 
     private Set<Edge<E, V>> edgeSet() {
-        Set<Edge<E, V>> edges = new HashSet<>();
+        Set<Edge<E, V>> edges = new LinkedHashSet<>();
         for (Vertex<V> vertex : vertices()) {
             edges.addAll(((SimpleVertex) vertex).edgeList);
         }
@@ -151,7 +151,10 @@ public class SimpleGraph<V, E> extends MutableGraph<V, E> implements Graph<V, E>
     public V removeVertex(Vertex<V> vertex) {
         if (!containsVertex(vertex))
             throw new IllegalArgumentException("Vertex not contained within graph");
-        vertexList.remove(vertex);
+        for (Edge<E, V> edge : new LinkedHashSet<>(((SimpleVertex) vertex).edgeList)) {
+            removeEdge(edge);
+        }
+        vertexList.values().remove(vertex);
         return vertex.element();
     }
 
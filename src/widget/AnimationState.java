@@ -0,0 +1,61 @@
+/*
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package widget;
+
+/**
+ * Decides when an animation may park, which it does once the layout it drew has settled.
+ * With a background simulation the layout drawn lags behind the commands sent to it, so a settled snapshot only
+ * allows parking if it was taken after every command sent before the last wake up. Otherwise the animation could
+ * park on a stale snapshot and never draw what those commands did.
+ */
+public final class AnimationState {
+
+    private boolean parked = false;
+    private long awaitedCommands = 0;              //commands the drawn layout must have applied before parking
+
+    /**
+     * Resumes the animation, which must then draw the outcome of every command sent so far before parking again.
+     *
+     * @param submittedCommands Commands sent to the simulation so far, 0 if it runs on the animation thread.
+     */
+    public void wake(long submittedCommands) {
+        parked = false;
+        awaitedCommands = submittedCommands;
+    }
+
+    /**
+     * Parks the animation if the layout drawn is settled and includes every awaited command.
+     *
+     * @param converged       Whether the layout drawn has settled.
+     * @param appliedCommands Commands applied to the layout drawn, 0 if it runs on the animation thread.
+     * @return true if the animation is parked.
+     */
+    public boolean park(boolean converged, long appliedCommands) {
+        if (converged && appliedCommands >= awaitedCommands) {
+            parked = true;
+        }
+        return parked;
+    }
+
+    /**
+     * Tests whether the animation is parked.
+     *
+     * @return true if the animation is parked.
+     */
+    public boolean isParked() {
+        return parked;
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package widget;
+
+import java.util.Arrays;
+
+/**
+ * Uniform grid used to compute the repulsion between nodes that are closer than a cutoff radius.
+ * Cells are at least as wide as the cutoff, so the nodes within the radius of a node are all found in its own
+ * cell and in the eight surrounding ones. Nodes are bucketed with a counting sort into flat arrays which are only
+ * grown, never shrunk, so that rebuilding the grid does not allocate once it reached its working size.
+ */
+public final class CellGrid {
+
+    // Cells are widened when the nodes are too spread out, so that there are never many more cells than nodes
+    private static final int CELLS_PER_NODE = 2;
+
+    private double[] pointX;                        // node coordinates, owned by the caller
+    private double[] pointY;
+
+    private double originX;
+    private double originY;
+    private double cellSize;
+    private int columns = 0;
+    private int rows = 0;
+    private int[] cellStart = new int[1];           // offset of the nodes of each cell within cellNodes
+    private int[] cellNodes = new int[0];           // nodes sorted by cell
+    private int[] nodeCell = new int[0];            // cell of each node
+
+    /**
+     * Buckets the first {@code count} nodes of the given coordinate arrays.
+     * The arrays are referenced, not copied, and must not change until the grid is rebuilt.
+     *
+     * @param x      X coordinates of the nodes.
+     * @param y      Y coordinates of the nodes.
+     * @param count  Amount of nodes.
+     * @param cutoff Largest distance at which nodes repel each other.
+     */
+    public void build(double[] x, double[] y, int count, double cutoff) {
+        pointX = x;
+        pointY = y;
+        if (nodeCell.length < count) {
+            nodeCell = new int[count];
+            cellNodes = new int[count];
+        }
+        columns = rows = 0;
+        if (count == 0) {
+            return;
+        }
+        double xMin, xMax, yMin, yMax;
+        xMin = xMax = x[0];
+        yMin = yMax = y[0];
+        for (int i = 1; i < count; i++) {
+            xMin = Math.min(xMin, x[i]);
+            xMax = Math.max(xMax, x[i]);
+            yMin = Math.min(yMin, y[i]);
+            yMax = Math.max(yMax, y[i]);
+        }
+        double width = xMax - xMin;
+        double height = yMax - yMin;
+        double maxCells = (double) CELLS_PER_NODE * count;
+        cellSize = Math.max(cutoff, Math.sqrt(width * height / maxCells));
+        while ((Math.floor(width / cellSize) + 1) * (Math.floor(height / cellSize) + 1) > maxCells + 1) {
+            cellSize *= 2;
+        }
+        originX = xMin;
+        originY = yMin;
+        columns = (int) (width / cellSize) + 1;
+        rows = (int) (height / cellSize) + 1;
+        int cells = columns * rows;
+        if (cellStart.length < cells + 1) {
+            cellStart = new int[cells + 1];
+        }
+        Arrays.fill(cellStart, 0, cells + 1, 0);
+        for (int i = 0; i < count; i++) {
+            int cell = column(x[i]) + row(y[i]) * columns;
+            nodeCell[i] = cell;
+            cellStart[cell + 1]++;
+        }
+        for (int cell = 0; cell < cells; cell++) {
+            cellStart[cell + 1] += cellStart[cell];
+        }
+        for (int i = 0; i < count; i++) {
+            cellNodes[cellStart[nodeCell[i]]++] = i;
+        }
+        // The fill pass left every offset pointing at the start of the next cell, shift them back into place
+        System.arraycopy(cellStart, 0, cellStart, 1, cells);
+        cellStart[0] = 0;
+    }
+
+    private int column(double x) {
+        return Math.min((int) ((x - originX) / cellSize), columns - 1);
+    }
+
+    private int row(double y) {
+        return Math.min((int) ((y - originY) / cellSize), rows - 1);
+    }
+
+    /**
+     * Adds the repelling force that every other node closer than {@code cutoff} applies to the node at
+     * {@code index} into the force arrays. Farther nodes are ignored.
+     * The grid is only read, so several threads can query it at once.
+     *
+     * @param index  Node being evaluated.
+     * @param cutoff Largest distance at which nodes repel, at most the one the grid was built with.
+     * @param scale  Repulsion scale.
+     * @param forceX Accumulator of the horizontal force components.
+     * @param forceY Accumulator of the vertical force components.
+     */
+    public void accumulateRepulsion(int index, double cutoff, double scale, double[] forceX, double[] forceY) {
+        if (columns == 0) {
+            return;
+        }
+        double x = pointX[index];
+        double y = pointY[index];
+        double squaredCutoff = cutoff * cutoff;
+        int cell = nodeCell[index];
+        int column = cell % columns;
+        int row = cell / columns;
+        double sumX = 0;
+        double sumY = 0;
+        for (int r = Math.max(row - 1, 0); r <= Math.min(row + 1, rows - 1); r++) {
+            int first = r * columns + Math.max(column - 1, 0);
+            int last = r * columns + Math.min(column + 1, columns - 1);
+            // Cells of a row are contiguous, so are their nodes
+            for (int k = cellStart[first]; k < cellStart[last + 1]; k++) {
+                int other = cellNodes[k];
+                if (other == index) {
+                    continue;
+                }
+                double dx = pointX[other] - x;
+                double dy = pointY[other] - y;
+                double squaredDistance = dx * dx + dy * dy;
+                if (squaredDistance < squaredCutoff) {
+                    double factor = FxMath.repellingFactor(squaredDistance, scale);
+                    sumX += dx * factor;
+                    sumY += dy * factor;
+                }
+            }
+        }
+        forceX[index] += sumX;
+        forceY[index] += sumY;
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package widget;
+
+/**
+ * Strategies available to choose how far nodes move on every simulation step.
+ * Except for {@link #NONE}, every node moves along its force by a distance called the temperature, which
+ * drops as the layout settles and is reset to its initial value whenever the layout is changed from outside.
+ */
+public enum CoolingSchedule {
+    /**
+     * Nodes always move by their force times the animation speed. Large graphs tend to oscillate.
+     */
+    NONE,
+    /**
+     * The temperature shrinks by a constant factor every step, so the layout always freezes after a
+     * bounded amount of steps.
+     */
+    GLOBAL,
+    /**
+     * Hu's adaptive step length. The temperature grows after a few steps in a row that lowered the total
+     * force, and shrinks after any step that raised it.
+     */
+    ADAPTIVE
+}
@@ -0,0 +1,95 @@
+/*
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package widget;
+
+/**
+ * Decides how many simulation steps an animation frame runs. A step is only started when one as long as the
+ * previous would still fit in the time left, but a minimum amount of them always runs, so that big graphs keep
+ * moving even when a single step overruns the budget.
+ */
+public final class FrameBudget {
+
+    private final int minSteps;
+    private long budget;                           //nanoseconds spent simulating per frame
+    private long start = 0;                        //timestamp of the start of the frame
+    private long elapsed = 0;                      //nanoseconds spent so far in the frame
+    private long lastStep = 0;                     //duration of the last step
+    private int steps = 0;
+
+    /**
+     * Builds a budget.
+     *
+     * @param budget   Simulation time per frame, in nanoseconds.
+     * @param minSteps Steps run per frame even if over the budget.
+     */
+    public FrameBudget(long budget, int minSteps) {
+        setBudget(budget);
+        this.minSteps = minSteps;
+    }
+
+    /**
+     * Sets the simulation time per frame.
+     *
+     * @param budget Simulation time per frame, in nanoseconds.
+     */
+    public void setBudget(long budget) {
+        if (budget < 0) {
+            throw new IllegalArgumentException("Frame budget can't be negative");
+        }
+        this.budget = budget;
+    }
+
+    /**
+     * Starts a new frame.
+     *
+     * @param now Current timestamp, in nanoseconds.
+     */
+    public void startFrame(long now) {
+        start = now;
+        elapsed = 0;
+        lastStep = 0;
+        steps = 0;
+    }
+
+    /**
+     * Tests whether another step may be started in the current frame.
+     *
+     * @return true if the step is expected to fit in the budget, or too few steps ran so far.
+     */
+    public boolean allowsStep() {
+        return steps < minSteps || elapsed + lastStep <= budget;
+    }
+
+    /**
+     * Accounts for a step that just completed.
+     *
+     * @param now Current timestamp, in nanoseconds.
+     */
+    public void stepDone(long now) {
+        steps++;
+        lastStep = now - start - elapsed;
+        elapsed = now - start;
+    }
+
+    /**
+     * Returns the amount of steps run in the current frame.
+     *
+     * @return Step count.
+     */
+    public int steps() {
+        return steps;
+    }
+}
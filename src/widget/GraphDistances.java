@@ -0,0 +1,96 @@
+/*
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package widget;
+
+import java.util.Arrays;
+
+/**
+ * Shortest path distances over the cached adjacency of a {@link LayoutEngine}, counted in edges.
+ */
+final class GraphDistances {
+
+    static final int UNREACHABLE = -1;
+
+    private GraphDistances() {
+    }
+
+    /**
+     * Computes the distance from a node to every other with a breadth first search.
+     *
+     * @param adjacencyStart Offset of the neighbours of each node within the adjacency, plus its length.
+     * @param adjacency      Neighbours of every node.
+     * @param source         Node to measure from.
+     * @param distances      Destination of the distances, {@link #UNREACHABLE} for nodes in other components.
+     * @param queue          Scratch space, as long as the amount of nodes.
+     * @return Largest distance found.
+     */
+    static int breadthFirst(int[] adjacencyStart, int[] adjacency, int source, int[] distances, int[] queue) {
+        Arrays.fill(distances, UNREACHABLE);
+        distances[source] = 0;
+        queue[0] = source;
+        int head = 0;
+        int tail = 1;
+        int farthest = 0;
+        while (head < tail) {
+            int node = queue[head++];
+            int distance = distances[node] + 1;
+            for (int k = adjacencyStart[node]; k < adjacencyStart[node + 1]; k++) {
+                int neighbour = adjacency[k];
+                if (distances[neighbour] == UNREACHABLE) {
+                    distances[neighbour] = distance;
+                    farthest = distance;
+                    queue[tail++] = neighbour;
+                }
+            }
+        }
+        return farthest;
+    }
+
+    /**
+     * Picks pivots spread over the whole graph with the max/min strategy: each new pivot is the node farthest
+     * from all the pivots picked before it. Nodes in components without pivots count as the farthest, so every
+     * component gets one before any gets a second.
+     *
+     * @param adjacencyStart Offset of the neighbours of each node within the adjacency, plus its length.
+     * @param adjacency      Neighbours of every node.
+     * @param pivots         Destination of the pivots, its length being the amount of pivots to pick.
+     * @return Distances from each pivot to every node, indexed like the pivots.
+     */
+    static int[][] maxMinPivots(int[] adjacencyStart, int[] adjacency, int[] pivots) {
+        int size = adjacencyStart.length - 1;
+        int[][] distances = new int[pivots.length][size];
+        int[] nearest = new int[size];                 // distance to the nearest pivot picked so far
+        Arrays.fill(nearest, Integer.MAX_VALUE);
+        int[] queue = new int[size];
+        int pivot = 0;
+        for (int p = 0; p < pivots.length; p++) {
+            pivots[p] = pivot;
+            breadthFirst(adjacencyStart, adjacency, pivot, distances[p], queue);
+            int next = 0;
+            for (int i = 0; i < size; i++) {
+                int distance = distances[p][i];
+                if (distance != UNREACHABLE && distance < nearest[i]) {
+                    nearest[i] = distance;
+                }
+                if (nearest[i] > nearest[next]) {
+                    next = i;
+                }
+            }
+            pivot = next;
+        }
+        return distances;
+    }
+}
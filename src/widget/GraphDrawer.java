@@ -22,6 +22,7 @@ import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.layout.AnchorPane;
 import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
 import javafx.scene.text.Font;
 import random.Selectable;
 import tads.Graph;
@@ -47,18 +48,18 @@ import java.util.function.Consumer;
 public class GraphDrawer<V extends Selectable, E extends Selectable> extends AnchorPane {
 
     private Graph<V, E> graph;
-    private Map<Vertex<V>, Point2D> nodeLocations = new HashMap<>();    // R² coordinates for each node
-    // Node force vector for the current iteration
-    private Map<Vertex<V>, Point2D> nodeTotalForce = new HashMap<>();
+    private final LayoutEngine<V, E> engine = new LayoutEngine<>();  //force simulation behind the drawing
+    private boolean backgroundSimulation = false;  //whether the animation simulates on its own thread
+    private LayoutWorker<V, E> worker = null;      //thread owning the engine while the background simulation runs
+    private LayoutSnapshot snapshot = null;        //step being drawn while the background simulation runs
 
-    public static final double SPRING_FORCE = 1;        //force = SPRING_FORCE*Math.log(distance/SPRING_SCALE);
-    public static final double SPRING_SCALE = 1;
-    public static final double REPULSION_SCALE = 5000;  //repulsion distance = REPULSION_SCALE/distance²;
-    public static final double ANIMATION_SPEED = 1;
+    public static final double SPRING_FORCE = LayoutEngine.SPRING_FORCE;
+    public static final double SPRING_SCALE = LayoutEngine.SPRING_SCALE;
+    public static final double REPULSION_SCALE = LayoutEngine.REPULSION_SCALE;
+    public static final double ANIMATION_SPEED = LayoutEngine.ANIMATION_SPEED;
 
     private int minDegree = Integer.MAX_VALUE;
     private int maxDegree = 0;
-    private int numVertices = 0;
 
     private Canvas canvas = new Canvas();
     private GraphicsContext gc = canvas.getGraphicsContext2D();
@@ -72,10 +73,12 @@ public class GraphDrawer<V extends Selectable, E extends Selectable> extends Anc
     private final Color TEXT_COLOR = Color.WHITE;
     private final Color TEXT_BORDER_COLOR = Color.BLACK;
     private final Color NODE_BORDER_COLOR = Color.BLACK;
+    private final Font LABEL_FONT = new Font(20);
 
     private final Color SELECTED_EDGE_COLOR = Color.RED;
     private final Color SELECTED_TEXT_COLOR = Color.RED;
     private final Color SELECTED_NODE_BORDER_COLOR = Color.RED;
+    private final LabelAtlas labelAtlas = new LabelAtlas(LABEL_FONT, TEXT_COLOR, SELECTED_TEXT_COLOR, TEXT_BORDER_COLOR);
 
     private double defaultNodeSize = 20;           //diameter, pixels
     private double nodeSize = defaultNodeSize;
@@ -87,14 +90,26 @@ public class GraphDrawer<V extends Selectable, E extends Selectable> extends Anc
     private double shiftX = 0;                     //initial displacement of the display on the canvas in x-direction
     private double shiftY = 0;                     //initial displacement of the display on the canvas in y-direction
     private double zoom = 1;                       //initial zoom factor (1=100%,0.5=50%,2=200%); zoom > 0
-    private double stepsPerFrame = 20;             //simulation steps computed per rendered frame
+    private static final int MIN_STEPS_PER_FRAME = 1;    //steps simulated per frame even if over the budget
+    private final FrameBudget frameBudget = new FrameBudget(8_000_000, MIN_STEPS_PER_FRAME);
     private boolean autoZoom = true;               //automatically fits every node in the canvas
+    private static final double ZOOM_STEP = 1.1;   //zoom factor of a mouse wheel notch
     private final double PADDING_FACTOR = 0.2;     //ratio of the padding area on the canvas in auto zoom TYPE
 
     private boolean renderEdges = true;            //toggle for the rendering of edges
 
+    private final LevelOfDetail detail = new LevelOfDetail();  //drawing detail at the current zoom
+    private double averageEdgeLength = 0;          //model space units, measured whenever the nodes move
+
     private boolean graphDrawn = false;            //control whether the current graph frame has been completely drawn
+    private boolean dirty = true;                  //positions, graph or selection changed since the last frame
+    private double drawnZoom = Double.NaN;         //viewport of the last frame, which is redrawn if it changes
+    private double drawnShiftX = Double.NaN;
+    private double drawnShiftY = Double.NaN;
+    private double drawnWidth = Double.NaN;
+    private double drawnHeight = Double.NaN;
     private boolean simulationActive = false;
+    private final AnimationState animation = new AnimationState();  //idle once the layout converged
     private boolean started = true;                //contains application state for tooltip logic
 
     private Vertex<V> draggedNode = null;          //Node currently being dragged
@@ -107,6 +122,10 @@ public class GraphDrawer<V extends Selectable, E extends Selectable> extends Anc
     private double shiftYBuffer = 0;               //buffers the y-shift between mouse pressed and dragged events
 
     private Map<Vertex<V>, Double> nodeColors = new HashMap<>();    //contains node colors
+    private Paint[] nodePaints = new Paint[0];     //fill of each node, by engine index
+    private double[] nodeSizes = new double[0];    //diameter of each node, by engine index
+    private Long seed = null;                      //seed of the node colors, restored on every new graph
+    private Random colorRandom = new Random();
 
     private Consumer<Vertex<V>> clickConsumer = null;
 
@@ -114,9 +133,26 @@ public class GraphDrawer<V extends Selectable, E extends Selectable> extends Anc
     private final boolean DISPLAY_FPS = false;
     private int frames = 0;
     private int frameDrawTime = 0; //Last frame timestamp
-
-
-    private Set<Set<Edge<E, V>>> edgeSpotsCache = new HashSet<>();
+    private static final long RATE_WINDOW = 1_000_000_000;  //nanoseconds over which the step rate is measured
+    private long rateWindowStart = -1;             //timestamp at which the current step rate window began
+    private long rateWindowStep = 0;               //simulation step at which the current step rate window began
+    private double stepsPerSecond = 0;
+
+
+    private Map<Set<Vertex<V>>, Set<Edge<E, V>>> edgeSpotsCache = new HashMap<>();  //edges by connected nodes
+    private List<Set<Edge<E, V>>> edgeSpots = new ArrayList<>();   //edge spots, in the order they are indexed
+    private int[] spotEnds = new int[0];           //node indices at both ends of each edge spot
+    private int[] spotEdgeCounts = new int[0];     //amount of edges of each edge spot
+
+    // Viewport culling
+    private final ViewCulling culling = new ViewCulling();
+    private double[] positionX = new double[0];    //node positions the culling was indexed with
+    private double[] positionY = new double[0];
+    private int[] allIndices = new int[0];         //0, 1, 2... drawn instead of the culling results with auto zoom
+    private boolean indexStale = true;             //positions changed since the indexes were built
+    private int[] visibleNodes = new int[0];
+    private int[] visibleEdgeSpots = new int[0];
+    private int visibleCount = 0;                  //amount of items found by the last culling
 
     /**
      * Builds the GraphDrawer with his default values.
@@ -128,20 +164,79 @@ public class GraphDrawer<V extends Selectable, E extends Selectable> extends Anc
         setTopAnchor(canvas, 0.0);
         setLeftAnchor(canvas, 0.0);
         initMouseEvents();
+        engine.setCoolingSchedule(CoolingSchedule.ADAPTIVE);
         timer = new AnimationTimer() {
 
             @Override
             public void handle(long now) {
-                if (simulationActive) {
-                    for (int i = 0; i < stepsPerFrame; i++) {
-                        simulateSingleStep(draggedNode);
+                if (worker != null) {
+                    LayoutSnapshot newest = worker.poll(snapshot);
+                    if (newest != null) {
+                        snapshot = newest;
+                        dirty = true;
                     }
+                } else if (simulationActive && simulateFrame() > 0) {
+                    dirty = true;
+                }
+                if (!animation.isParked()) {
+                    measureStepRate(now);
+                }
+                if (needsRepaint()) {
+                    renderGraph(dirty);
+                }
+                if (animation.park(isConverged(), snapshot != null ? snapshot.getCommandCount() : 0)) {
+                    // Nothing will move until someone interacts with the graph, which wakes the animation up
+                    stepsPerSecond = 0;
+                    rateWindowStart = -1;
+                    stop();
                 }
-                renderGraph();
             }
         };
     }
 
+    /**
+     * Simulates as many steps as fit in the frame budget, and at least {@link #MIN_STEPS_PER_FRAME}.
+     * No step is started when one as long as the previous would overrun the budget.
+     *
+     * @return Amount of steps simulated, 0 if the layout had already converged.
+     */
+    private int simulateFrame() {
+        frameBudget.startFrame(System.nanoTime());
+        while (!engine.isConverged() && frameBudget.allowsStep()) {
+            engine.simulateSingleStep(draggedNode);
+            frameBudget.stepDone(System.nanoTime());
+        }
+        return frameBudget.steps();
+    }
+
+    /**
+     * Tests whether the next frame would look any different from the last one drawn, which is the case when the
+     * drawing was marked as dirty or the viewport moved.
+     *
+     * @return true if the frame must be drawn.
+     */
+    private boolean needsRepaint() {
+        return dirty || zoom != drawnZoom || shiftX != drawnShiftX || shiftY != drawnShiftY
+                || getWidth() != drawnWidth || getHeight() != drawnHeight;
+    }
+
+    /**
+     * Updates the step rate once a second, from the steps completed by the animation or the background thread.
+     *
+     * @param now Timestamp of the current frame, in nanoseconds.
+     */
+    private void measureStepRate(long now) {
+        long step = snapshot != null ? snapshot.getStep() : engine.getStepCount();
+        if (rateWindowStart < 0 || step < rateWindowStep) {
+            rateWindowStart = now;
+            rateWindowStep = step;
+        } else if (now - rateWindowStart >= RATE_WINDOW) {
+            stepsPerSecond = (step - rateWindowStep) * 1e9 / (now - rateWindowStart);
+            rateWindowStart = now;
+            rateWindowStep = step;
+        }
+    }
+
     /**
      * Builds the GraphDrawer for a graph.
      *
@@ -158,22 +253,51 @@ public class GraphDrawer<V extends Selectable, E extends Selectable> extends Anc
      * @param graph Graph to draw.
      */
     public void setGraph(Graph<V, E> graph) {
-        nodeLocations.clear();
-        nodeTotalForce.clear();
         if (graph != null) {
+            boolean restartWorker = worker != null;
+            stopWorker();
             this.graph = graph;
-            numVertices = graph.vertexCount();
-            generateInitialSpawns(canvasWidth, canvasHeight,
-                    PADDING_FACTOR * canvasWidth,
-                    PADDING_FACTOR * canvasHeight);
+            if (seed != null) {
+                colorRandom = new Random(seed);
+                nodeColors.clear();
+            }
+            engine.setSpawnArea(canvasWidth, canvasHeight);
+            engine.setGraph(graph);
             cacheVertexEdges();
             computeExtremeDegrees();
+            cacheNodeStyles();
+            if (restartWorker) {
+                startWorker();
+            }
+            wakeUp();
         } else {
             stopAnimation();
             this.graph = null;
+            engine.setGraph(null);
         }
     }
 
+    /**
+     * Updates the drawing after vertices or edges were added to or removed from the graph being drawn.
+     * Nodes that were already drawn stay where they are, new ones are placed next to their neighbours, and only
+     * the surroundings of the changes are simulated again.
+     */
+    public void refreshGraph() {
+        if (graph == null) {
+            return;
+        }
+        boolean restartWorker = worker != null;
+        stopWorker();
+        engine.refreshGraph();
+        cacheVertexEdges();
+        computeExtremeDegrees();
+        cacheNodeStyles();
+        if (restartWorker) {
+            startWorker();
+        }
+        wakeUp();
+    }
+
     /**
      * Resize the drawing canvas.
      *
@@ -189,156 +313,238 @@ public class GraphDrawer<V extends Selectable, E extends Selectable> extends Anc
         canvas.setWidth(width);
         this.setHeight(height);
         canvas.setHeight(height);
+        wakeUp();
     }
 
     /**
-     * Generates initial spawn locations for all nodes with an area constrained
-     * by the areas boundaries and the padding.
+     * Obtains the current location of a node.
      *
-     * @param xBoundary x boundary of the drawing area in the model space.
-     * @param yBoundary y boundary of the drawing area in the model space.
-     * @param xPadding  x padding.
-     * @param yPadding  y padding.
+     * @param node Node.
+     * @return Location in the model space.
      */
-    private void generateInitialSpawns(double xBoundary, double yBoundary, double xPadding, double yPadding) {
-        for (Vertex<V> vertex : graph.vertices()) {
-            nodeLocations.put(
-                    vertex,
-                    new Point2D(
-                            Math.random()
-                                    * (Math.pow(numVertices, .3)
-                                    * xBoundary - 2 * xPadding)
-                                    + xPadding,
-                            Math.random() * (Math.pow(numVertices, .3)
-                                    * yBoundary - 2 * yPadding)
-                                    + yPadding
-                    )
-            );
-        }
+    private Point2D nodeLocation(Vertex<V> node) {
+        int index = engine.indexOf(node);
+        return new Point2D(nodeX(index), nodeY(index));
+    }
+
+    private double nodeX(int index) {
+        return snapshot != null ? snapshot.getX(index) : engine.getX(index);
+    }
+
+    private double nodeY(int index) {
+        return snapshot != null ? snapshot.getY(index) : engine.getY(index);
     }
 
     /**
-     * Changes a node location location.
+     * Runs an action over the layout engine, deferring it to the simulation thread when there is one.
      *
-     * @param node     ID of the node.
-     * @param location New location.
+     * @param action Action.
      */
-    private void setNodeLocation(Vertex<V> node, Point2D location) {
-        nodeLocations.replace(node, location);
+    private void withEngine(Consumer<LayoutEngine<V, E>> action) {
+        if (worker != null) {
+            worker.submit(action);
+        } else {
+            action.accept(engine);
+        }
     }
 
     /**
-     * Computes the forces that are applied to every node by looping all node maps.
+     * Computes the maximum and minimum degree of the graph vertices, counting distinct neighbours as cached by the
+     * engine, which the graph itself may take linear time to count.
      */
-    private void computeForces() {
-        for (Map.Entry<Vertex<V>, Point2D> outerNode : nodeLocations.entrySet()) {
-            for (Map.Entry<Vertex<V>, Point2D> innerNode : nodeLocations.entrySet()) {
-                if (outerNode.getKey() == innerNode.getKey()) {
-                    continue;
-                }
-                Point2D repellingForce = FxMath.repellingForce(outerNode.getValue(), innerNode.getValue(), REPULSION_SCALE);
-                Point2D outerNodeForce = nodeTotalForce.get(outerNode.getKey());
-                if (graph.areAdjacent(outerNode.getKey(), innerNode.getKey())) {
-                    Point2D attractiveForce = FxMath.attractiveForce(outerNode.getValue(), innerNode.getValue(), numVertices, SPRING_FORCE, SPRING_SCALE);
-
-                    nodeTotalForce.replace(outerNode.getKey(), new Point2D(
-                            outerNodeForce.getX() + attractiveForce.getX() + repellingForce.getX(),
-                            outerNodeForce.getY() + attractiveForce.getY() + repellingForce.getY()
-                    ));
-                } else {
-                    nodeTotalForce.replace(outerNode.getKey(), new Point2D(
-                            outerNodeForce.getX() + repellingForce.getX(),
-                            outerNodeForce.getY() + repellingForce.getY()
-                    ));
-                }
+    private void computeExtremeDegrees() {
+        int[] adjacencyStart = engine.adjacencyStart();
+        minDegree = Integer.MAX_VALUE;
+        maxDegree = 0;
+        for (int i = 0; i < engine.vertexCount(); i++) {
+            int degree = adjacencyStart[i + 1] - adjacencyStart[i];
+            if (degree < minDegree) {
+                minDegree = degree;
+            }
+            if (degree > maxDegree) {
+                maxDegree = degree;
             }
         }
     }
 
     /**
-     * Applies computed forces.
+     * Works out the fill and diameter of every node, so that frames do not compute them again. When the degrees
+     * differ nodes are given random hues, which they keep as long as they are in the graph, and grow with their
+     * degree.
+     */
+    private void cacheNodeStyles() {
+        int size = engine.vertexCount();
+        int[] adjacencyStart = engine.adjacencyStart();
+        nodePaints = new Paint[size];
+        nodeSizes = new double[size];
+        for (int i = 0; i < size; i++) {
+            Vertex<V> vertex = engine.vertexAt(i);
+            if (maxDegree != minDegree) {
+                double hue = nodeColors.computeIfAbsent(vertex, key -> colorRandom.nextDouble() * 360);
+                nodePaints[i] = Color.hsb(hue, 1, 1);
+                nodeSizes[i] = nodeSize + (adjacencyStart[i + 1] - adjacencyStart[i]) * NODE_DEGREE_SCALER;
+            } else {
+                nodePaints[i] = NODE_COLOR;
+                nodeSizes[i] = nodeSize;
+            }
+        }
+    }
+
+    /**
+     * Applies a simulation step
      *
      * @param ignoreNode Optional ID of a node to be ignored (eg. being dragged)
      */
-    private void applyForce(Vertex<V> ignoreNode) {
-        Set<Map.Entry<Vertex<V>, Point2D>> entries = nodeLocations.entrySet();
-        for (Map.Entry<Vertex<V>, Point2D> node : entries) {
-            Vertex<V> currentNode = node.getKey();
-            if (currentNode == ignoreNode) {
-                continue;
+    public void simulateSingleStep(Vertex<V> ignoreNode) {
+        withEngine(layout -> layout.simulateSingleStep(ignoreNode));
+    }
+
+    /**
+     * Advances the simulation a determined amount of steps.
+     *
+     * @param steps Amount of steps to advance.
+     */
+    public void advanceSteps(int steps) {
+        Vertex<V> ignoreNode = draggedNode;
+        withEngine(layout -> {
+            for (int i = 0; i < steps; i++) {
+                layout.simulateSingleStep(ignoreNode);
             }
-            Point2D point = node.getValue();
-            Point2D forceVector = nodeTotalForce.get(currentNode);
-            node.setValue(new Point2D(
-                    point.getX() + ANIMATION_SPEED * forceVector.getX(),
-                    point.getY() + ANIMATION_SPEED * forceVector.getY()
-            ));
-        }
+        });
     }
 
     /**
-     * Computes a box around the graph that contains all of its nodes.
+     * Selects how the repulsion between nodes is computed.
      *
-     * @return xMin, yMin, xMax, yMax (upper left and lower right corners of the box).
+     * @param mode Repulsion mode.
      */
-    private double[] getBoundaries() {
-        double xMin, xMax, yMin, yMax;
-        xMin = yMin = Double.MAX_VALUE;
-        xMax = yMax = Double.MIN_VALUE;
-        for (Point2D position : nodeLocations.values()) {
-            double x = position.getX();
-            double y = position.getY();
-            xMin = (x < xMin) ? x : xMin;
-            yMin = (y < yMin) ? y : yMin;
-            xMax = (x > xMax) ? x : xMax;
-            yMax = (y > yMax) ? y : yMax;
+    public void setRepulsionMode(RepulsionMode mode) {
+        withEngine(layout -> layout.setRepulsionMode(mode));
+        wakeUp();
+    }
+
+    /**
+     * Sets the opening angle used by the Barnes-Hut approximation.
+     *
+     * @param theta Ratio between a cell size and its distance to a node below which the cell is approximated.
+     * @see LayoutEngine#setBarnesHutTheta(double)
+     */
+    public void setBarnesHutTheta(double theta) {
+        if (theta < 0) {
+            throw new IllegalArgumentException("Theta can't be negative");
         }
+        withEngine(layout -> layout.setBarnesHutTheta(theta));
+        wakeUp();
+    }
 
-        return new double[]{xMin, yMin, xMax, yMax};
+    /**
+     * Sets the distance beyond which nodes stop repelling each other in grid repulsion mode.
+     *
+     * @param radius Cutoff radius, in model space units.
+     * @see LayoutEngine#setCutoffRadius(double)
+     */
+    public void setCutoffRadius(double radius) {
+        if (!(radius > 0)) {
+            throw new IllegalArgumentException("Cutoff radius must be positive");
+        }
+        withEngine(layout -> layout.setCutoffRadius(radius));
+        wakeUp();
     }
 
     /**
-     * Computes the maximum and minimum degree of the graph vertices.
+     * Sets the order of the expansions used in fast multipole repulsion mode.
+     *
+     * @param order Expansion order.
+     * @see LayoutEngine#setMultipoleOrder(int)
      */
-    private void computeExtremeDegrees() {
-        for (Vertex<V> vertex : graph.vertices()) {
-            int degree = graph.vertexDegree(vertex);
-            if (degree < minDegree) {
-                minDegree = degree;
-            }
-            if (degree > maxDegree) {
-                maxDegree = degree;
-            }
+    public void setMultipoleOrder(int order) {
+        if (order < 0 || order > MultipoleTree.MAX_ORDER) {
+            throw new IllegalArgumentException("Order must be between 0 and " + MultipoleTree.MAX_ORDER);
         }
+        withEngine(layout -> layout.setMultipoleOrder(order));
+        wakeUp();
     }
 
     /**
-     * Applies a simulation step
+     * Selects how far nodes move on every simulation step. Drawers use {@link CoolingSchedule#ADAPTIVE} by default.
      *
-     * @param ignoreNode Optional ID of a node to be ignored (eg. being dragged)
+     * @param schedule Cooling schedule.
+     * @see LayoutEngine#setCoolingSchedule(CoolingSchedule)
      */
-    public void simulateSingleStep(Vertex<V> ignoreNode) {
-        initForces();
-        computeForces();
-        applyForce(ignoreNode);
+    public void setCoolingSchedule(CoolingSchedule schedule) {
+        withEngine(layout -> layout.setCoolingSchedule(schedule));
+        wakeUp();
     }
 
     /**
-     * Resets node forces
+     * Chooses whether the connected components of the graph are simulated apart and packed side by side.
+     *
+     * @param packing true to simulate and pack the components apart.
+     * @see LayoutEngine#setComponentPacking(boolean)
      */
-    private void initForces() {
-        nodeLocations.forEach((vert, vect) -> nodeTotalForce.put(vert, new Point2D(0, 0)));
+    public void setComponentPacking(boolean packing) {
+        withEngine(layout -> layout.setComponentPacking(packing));
+        wakeUp();
     }
 
     /**
-     * Advances the simulation a determined amount of steps.
+     * Chooses whether exact repulsion is computed by a kernel laid out for SIMD instructions.
      *
-     * @param steps Amount of steps to advance.
+     * @param vectorized true to use the SIMD friendly kernel.
+     * @see LayoutEngine#setVectorizedRepulsion(boolean)
      */
-    public void advanceSteps(int steps) {
-        for (int i = 0; i < steps; i++) {
-            simulateSingleStep(draggedNode);
+    public void setVectorizedRepulsion(boolean vectorized) {
+        withEngine(layout -> layout.setVectorizedRepulsion(vectorized));
+        wakeUp();
+    }
+
+    /**
+     * Sets the amount of threads used to compute the forces of big graphs.
+     *
+     * @param parallelism Amount of threads.
+     * @see LayoutEngine#setParallelism(int)
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1");
         }
+        withEngine(layout -> layout.setParallelism(parallelism));
+        wakeUp();
+    }
+
+    /**
+     * Makes the drawing reproducible: the same graph drawn with the same seed gets the same layout and colors.
+     * It takes effect on the next graph set.
+     *
+     * @param seed Seed of the random sources.
+     * @see LayoutEngine#setSeed(long)
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+        withEngine(layout -> layout.setSeed(seed));
+    }
+
+    /**
+     * Returns the engine simulating the layout of the drawn graph.
+     * It can be used to load coordinates computed elsewhere or to tune the simulation.
+     * It must not be touched while a background simulation is running.
+     *
+     * @return Layout engine.
+     */
+    public LayoutEngine<V, E> getLayoutEngine() {
+        return engine;
+    }
+
+    /**
+     * Replaces the current layout with one computed in one go, such as a {@link MultilevelLayout}, which
+     * untangles big graphs much faster than the animation would, or a {@link StressLayout}.
+     * A running animation carries on simulating from the new coordinates, stop it to keep them as computed.
+     *
+     * @param layout Layout to apply.
+     */
+    public void applyLayout(GraphLayout layout) {
+        withEngine(layout::apply);
+        wakeUp();
     }
 
     /**
@@ -348,16 +554,23 @@ public class GraphDrawer<V extends Selectable, E extends Selectable> extends Anc
         setOnMouseDragged(event -> {
             if (draggedNode != null) { // drag node
                 Point2D location = drawingSpaceToCoordinateSpace(event.getX(), event.getY());
-                setNodeLocation(draggedNode, location);
+                Vertex<V> node = draggedNode;
+                withEngine(layout -> layout.setLocation(node, location.getX(), location.getY()));
             } else {
+                // Panning takes the view over from the automatic zoom
+                autoZoom = false;
                 shiftX = shiftXBuffer + (event.getX() - cursorPressedX);
                 shiftY = shiftYBuffer + (event.getY() - cursorPressedY);
             }
+            wakeUp();
 
         });
 
         setOnMousePressed(event -> {
             draggedNode = checkForMouseNodeCollision(event.getX(), event.getY());
+            if (worker != null) {
+                worker.pin(draggedNode);
+            }
             if (draggedNode == null) {
                 cursorPressedX = event.getX();
                 cursorPressedY = event.getY();
@@ -366,7 +579,27 @@ public class GraphDrawer<V extends Selectable, E extends Selectable> extends Anc
             }
         });
 
-        setOnMouseReleased(event -> draggedNode = null);
+        setOnMouseReleased(event -> {
+            draggedNode = null;
+            if (worker != null) {
+                worker.pin(null);
+            }
+            wakeUp();
+        });
+
+        setOnScroll(event -> {
+            if (event.getDeltaY() == 0) {
+                return;
+            }
+            // Zooms around the pointer, which stays over the same spot of the model
+            double factor = event.getDeltaY() > 0 ? ZOOM_STEP : 1 / ZOOM_STEP;
+            Point2D pointer = drawingSpaceToCoordinateSpace(event.getX(), event.getY());
+            autoZoom = false;
+            zoom *= factor;
+            shiftX = event.getX() - pointer.getX() * zoom;
+            shiftY = event.getY() - pointer.getY() * zoom;
+            wakeUp();
+        });
 
         setOnMouseMoved(event -> {
             tooltipNode = checkForMouseNodeCollision(event.getX(), event.getY());
@@ -399,6 +632,10 @@ public class GraphDrawer<V extends Selectable, E extends Selectable> extends Anc
      */
     public void startAnimation() {
         simulationActive = true;
+        if (backgroundSimulation && worker == null) {
+            startWorker();
+        }
+        animation.wake(worker != null ? worker.submittedCount() : 0);
         timer.start();
     }
 
@@ -408,18 +645,202 @@ public class GraphDrawer<V extends Selectable, E extends Selectable> extends Anc
     public void stopAnimation() {
         simulationActive = false;
         timer.stop();
+        stopWorker();
+    }
+
+    /**
+     * Resumes an animation that was parked after its layout converged, and has the next frame drawn even if the
+     * layout did not move. Dragging, resizing, selecting through {@link #setSelected(Selectable, boolean)}, setting
+     * a graph and changing the simulation already do this. Anything else changing the drawing, such as selecting a
+     * node or edge element directly, must be followed by a call to this method.
+     */
+    public void wakeUp() {
+        dirty = true;
+        animation.wake(worker != null ? worker.submittedCount() : 0);
+        if (simulationActive) {
+            timer.start();
+        }
+    }
+
+    /**
+     * Selects or deselects a node or edge element of the drawn graph, and has the change drawn.
+     *
+     * @param element Node or edge element.
+     * @param state   New selection state.
+     */
+    public void setSelected(Selectable element, boolean state) {
+        element.setSelected(state);
+        wakeUp();
+    }
+
+    /**
+     * Tests whether the layout has settled, in which case the animation stops simulating and drawing.
+     *
+     * @return Convergence state.
+     */
+    public boolean isConverged() {
+        if (snapshot != null) {
+            return snapshot.isConverged();
+        }
+        return engine.isConverged();
+    }
+
+    /**
+     * Returns the step at which the layout settled.
+     *
+     * @return Step number, or -1 if the layout did not settle yet.
+     */
+    public long getConvergedStep() {
+        if (snapshot != null) {
+            return snapshot.getConvergedStep();
+        }
+        return engine.getConvergedStep();
+    }
+
+    /**
+     * Sets the largest node displacement per step under which the layout is considered settled.
+     *
+     * @param threshold Displacement, in model space units.
+     */
+    public void setConvergenceThreshold(double threshold) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("Threshold can't be negative");
+        }
+        withEngine(layout -> layout.setConvergenceThreshold(threshold));
+        wakeUp();
+    }
+
+    /**
+     * Chooses whether every node is kept on the canvas by zooming and shifting the view as the layout moves.
+     * Zooming with the mouse wheel or panning by dragging the background turns it off.
+     *
+     * @param autoZoom true to fit the layout in the canvas on every frame.
+     */
+    public void setAutoZoom(boolean autoZoom) {
+        this.autoZoom = autoZoom;
+        wakeUp();
+    }
+
+    /**
+     * Sets the zoom below which labels are no longer drawn, given as the length an average edge is drawn with.
+     *
+     * @param pixels Edge length, in pixels.
+     */
+    public void setLabelThreshold(double pixels) {
+        detail.setLabelThreshold(pixels);
+        wakeUp();
+    }
+
+    /**
+     * Sets the zoom below which edges are drawn as thin solid lines, parallel ones merged into a single line, given
+     * as the length an average edge is drawn with.
+     *
+     * @param pixels Edge length, in pixels.
+     */
+    public void setEdgeDetailThreshold(double pixels) {
+        detail.setEdgeDetailThreshold(pixels);
+        wakeUp();
+    }
+
+    /**
+     * Sets the zoom below which unselected nodes are drawn as single pixels, given as the length an average edge is
+     * drawn with.
+     *
+     * @param pixels Edge length, in pixels.
+     */
+    public void setNodeDetailThreshold(double pixels) {
+        detail.setNodeDetailThreshold(pixels);
+        wakeUp();
+    }
+
+    /**
+     * Sets the time the animation spends simulating in every frame. As many steps as fit are simulated, but never
+     * less than one, so big graphs keep moving. It does not apply to the background simulation, which runs freely.
+     *
+     * @param milliseconds Simulation time per frame.
+     */
+    public void setFrameBudget(double milliseconds) {
+        frameBudget.setBudget((long) (milliseconds * 1_000_000));
+    }
+
+    /**
+     * Returns the amount of simulation steps per second achieved over the last second, whether they were simulated
+     * by the animation or in the background. Compared with the frame rate, it tells how much room is left for
+     * bigger graphs or heavier repulsion modes.
+     *
+     * @return Steps per second, 0 while the layout is settled.
+     */
+    public double getStepsPerSecond() {
+        return stepsPerSecond;
+    }
+
+    /**
+     * Chooses whether the animation simulates on a dedicated thread instead of the JavaFX application thread.
+     * In the background the simulation runs as fast as it can, and every frame draws the newest completed step,
+     * so that heavy steps do not block the user interface.
+     *
+     * @param background true to simulate on a dedicated thread.
+     */
+    public void setBackgroundSimulation(boolean background) {
+        this.backgroundSimulation = background;
+        if (!background) {
+            stopWorker();
+        } else if (simulationActive && worker == null) {
+            startWorker();
+        }
+    }
+
+    /**
+     * Hands the engine over to a new simulation thread.
+     */
+    private void startWorker() {
+        snapshot = new LayoutSnapshot(engine.vertexCount());
+        snapshot.capture(engine, 0);
+        worker = new LayoutWorker<>(engine);
+        worker.pin(draggedNode);
+        worker.start();
+        wakeUp();
+    }
+
+    /**
+     * Stops the simulation thread, if any, taking the engine back to the application thread.
+     */
+    private void stopWorker() {
+        if (worker != null) {
+            worker.stop();
+            worker = null;
+            snapshot = null;
+            wakeUp();
+        }
     }
 
     /**
      * Initiates the rendering procedure for the entire graph including background, nodes and edges.
      */
     public void renderGraph() {
+        renderGraph(true);
+    }
+
+    /**
+     * Renders the graph, only rebuilding the spatial indexes if the nodes could have moved since the last frame.
+     *
+     * @param moved Whether positions or the graph changed since the last frame.
+     */
+    private void renderGraph(boolean moved) {
         gc.clearRect(0, 0, this.getWidth(), this.getHeight());
+        labelAtlas.startFrame();
         if (autoZoom) {
             fitContent();
         }
+        indexStale |= moved;
         if (started) {
             if (graph != null) {
+                if (moved) {
+                    measureEdgeLength();
+                }
+                if (!autoZoom && indexStale) {
+                    indexContent();
+                }
                 drawEdges();
                 drawNodes();
                 graphDrawn = true;
@@ -427,11 +848,17 @@ public class GraphDrawer<V extends Selectable, E extends Selectable> extends Anc
                 graphDrawn = false;
             }
         }
+        dirty = false;
+        drawnZoom = zoom;
+        drawnShiftX = shiftX;
+        drawnShiftY = shiftY;
+        drawnWidth = getWidth();
+        drawnHeight = getHeight();
         if (DISPLAY_FPS) {
             int currentSecond = LocalTime.now().getSecond();
             if (frameDrawTime != currentSecond) {
                 frameDrawTime = currentSecond;
-                System.out.println(frames + " FPS");
+                System.out.println(frames + " FPS, " + Math.round(stepsPerSecond) + " steps/s");
                 frames = 0;
             }
             frames++;
@@ -443,25 +870,41 @@ public class GraphDrawer<V extends Selectable, E extends Selectable> extends Anc
      * Also, computes the size of any given node by its degree and sets its color.
      */
     private void drawNodes() {
-        gc.setFill(NODE_COLOR);
-        for (Vertex<V> vertex : graph.vertices()) {
-            if (maxDegree != minDegree) {
-                if (!nodeColors.containsKey(vertex)) {
-                    nodeColors.put(vertex, Math.random() * 360);
-                }
-                gc.setFill(Color.web("hsl(" + nodeColors.get(vertex) + ",100%,100%)"));
-                drawSingleNode(
-                        nodeLocations.get(vertex),
-                        vertex.element().toString(),
-                        nodeSize + graph.vertexDegree(vertex) * NODE_DEGREE_SCALER,
-                        vertex.element().isSelected());
-            } else {
-                drawSingleNode(
-                        nodeLocations.get(vertex),
-                        vertex.element().toString(),
-                        nodeSize,
-                        vertex.element().isSelected());
-            }
+        double pixels = edgePixels();
+        boolean labels = detail.drawsLabels(pixels);
+        boolean dots = detail.drawsDots(pixels);
+        if (autoZoom) {
+            visibleCount = engine.vertexCount();
+            visibleNodes = allIndices(visibleCount);
+        } else {
+            visibleCount = culling.cullNodes(zoom, shiftX, shiftY, getWidth(), getHeight());
+            visibleNodes = culling.visibleNodes();
+        }
+        for (int k = 0; k < visibleCount; k++) {
+            int index = visibleNodes[k];
+            gc.setFill(nodePaints[index]);
+            drawNode(index, labels, dots);
+        }
+    }
+
+    /**
+     * Draws a node with as much detail as the zoom allows. Selected nodes are always drawn in full.
+     *
+     * @param index  Engine index of the node.
+     * @param labels Whether labels are drawn.
+     * @param dots   Whether nodes are reduced to single pixels.
+     */
+    private void drawNode(int index, boolean labels, boolean dots) {
+        V element = engine.vertexAt(index).element();
+        boolean selected = element.isSelected();
+        double x = nodeX(index);
+        double y = nodeY(index);
+        if (dots && !selected) {
+            gc.fillRect(x * zoom + shiftX, y * zoom + shiftY, 1, 1);
+        } else if (labels || selected) {
+            drawSingleNode(x, y, element.toString(), nodeSizes[index], selected);
+        } else {
+            drawSingleNode(x, y, nodeSizes[index], selected);
         }
     }
 
@@ -475,11 +918,12 @@ public class GraphDrawer<V extends Selectable, E extends Selectable> extends Anc
     private Vector<Double> nodeHitbox(Vertex<V> node) {
         double size;
         if (minDegree != maxDegree) {
-            size = nodeSize + graph.vertexDegree(node);
+            int index = engine.indexOf(node);
+            size = nodeSize + engine.adjacencyStart()[index + 1] - engine.adjacencyStart()[index];
         } else {
             size = nodeSize;
         }
-        Point2D location = nodeLocations.get(node);
+        Point2D location = nodeLocation(node);
         double x = location.getX();
         double y = location.getY();
         Vector<Double> vec = new Vector<>(4);
@@ -503,8 +947,8 @@ public class GraphDrawer<V extends Selectable, E extends Selectable> extends Anc
      */
     private void fitContent() {
         double[] vec;
-        if (numVertices > 1) {
-            vec = getBoundaries();
+        if (engine.vertexCount() > 1) {
+            vec = snapshot != null ? snapshot.getBoundaries() : engine.getBoundaries();
             zoom = Math.min(
                     (1 - PADDING_FACTOR) * canvasWidth / (vec[2] - vec[0]),
                     (1 - PADDING_FACTOR) * canvasHeight / (vec[3] - vec[1]));
@@ -519,22 +963,41 @@ public class GraphDrawer<V extends Selectable, E extends Selectable> extends Anc
     private void drawEdges() {
         if (!renderEdges)
             return;
-        for (Set<Edge<E, V>> edgeSpot : edgeSpotsCache) {
+        if (autoZoom) {
+            visibleCount = edgeSpots.size();
+            visibleEdgeSpots = allIndices(visibleCount);
+        } else {
+            visibleCount = culling.cullEdgeSpots(zoom, shiftX, shiftY, getWidth(), getHeight());
+            visibleEdgeSpots = culling.visibleEdgeSpots();
+        }
+        double pixels = edgePixels();
+        if (!detail.drawsEdgeDetail(pixels)) {
+            drawSimpleEdges(false);
+            drawSimpleEdges(true);
+            return;
+        }
+        boolean labels = detail.drawsLabels(pixels);
+        for (int k = 0; k < visibleCount; k++) {
+            int spot = visibleEdgeSpots[k];
+            Set<Edge<E, V>> edgeSpot = edgeSpots.get(spot);
+            // Parallel edges are drawn the same whichever way they go, so the ends of the spot are used for all
+            double toX = nodeX(spotEnds[2 * spot]);
+            double toY = nodeY(spotEnds[2 * spot]);
+            double fromX = nodeX(spotEnds[2 * spot + 1]);
+            double fromY = nodeY(spotEnds[2 * spot + 1]);
             //If there is only one edge between two points
             if (edgeSpot.size() == 1) {
                 Edge<E, V> edge = edgeSpot.iterator().next();
-                Point2D to = nodeLocations.get(edge.vertices()[0]);
-                Point2D from = nodeLocations.get(edge.vertices()[1]);
                 gc.save();
                 //Draw edge
                 gc.setLineWidth(4);
                 gc.setLineDashes(30);
                 gc.setStroke(EDGE_BORDER_COLOR);
                 gc.strokeLine(
-                        to.getX() * zoom + shiftX,
-                        to.getY() * zoom + shiftY,
-                        from.getX() * zoom + shiftX,
-                        from.getY() * zoom + shiftY
+                        toX * zoom + shiftX,
+                        toY * zoom + shiftY,
+                        fromX * zoom + shiftX,
+                        fromY * zoom + shiftY
                 );
 
                 gc.setLineWidth(2);
@@ -544,31 +1007,20 @@ public class GraphDrawer<V extends Selectable, E extends Selectable> extends Anc
                     gc.setStroke(EDGE_COLOR);
                 }
                 gc.strokeLine(
-                        to.getX() * zoom + shiftX,
-                        to.getY() * zoom + shiftY,
-                        from.getX() * zoom + shiftX,
-                        from.getY() * zoom + shiftY
+                        toX * zoom + shiftX,
+                        toY * zoom + shiftY,
+                        fromX * zoom + shiftX,
+                        fromY * zoom + shiftY
                 );
 
                 //Draw edge text
-                if (edge.element().isSelected()) {
-                    gc.setFill(SELECTED_TEXT_COLOR);
-                } else {
-                    gc.setFill(TEXT_COLOR);
+                if (labels) {
+                    drawLabel(
+                            edge.element().toString(),
+                            (fromX + toX) / 2 * zoom + shiftX + 10,
+                            (fromY + toY) / 2 * zoom + shiftY,
+                            edge.element().isSelected());
                 }
-                gc.setFont(new Font(20));
-                gc.setStroke(TEXT_BORDER_COLOR);
-                gc.setLineDashes(0);
-                gc.setLineWidth(2);
-                Point2D textLocation = FxMath.getMiddlePoint(from, to);
-                gc.strokeText(
-                        edge.element().toString(),
-                        textLocation.getX() * zoom + shiftX + 10,
-                        textLocation.getY() * zoom + shiftY);
-                gc.fillText(
-                        edge.element().toString(),
-                        textLocation.getX() * zoom + shiftX + 10,
-                        textLocation.getY() * zoom + shiftY);
                 gc.restore();
                 //In case there are multiple edges
             } else {
@@ -578,26 +1030,25 @@ public class GraphDrawer<V extends Selectable, E extends Selectable> extends Anc
                 int edgeIndex = 0;
                 int shiftMax = edgesNumber * 5 + 10;
                 int edgeShift = shiftMax * 2 / edgesNumber;
+                double angle = FxMath.getReciprocalAngle(fromX, fromY, toX, toY);
+                double middleX = (fromX + toX) / 2;
+                double middleY = (fromY + toY) / 2;
                 for (Edge<E, V> edge : edgeSpot) {
-                    Point2D to = nodeLocations.get(edge.vertices()[0]);
-                    Point2D from = nodeLocations.get(edge.vertices()[1]);
-                    double angle = FxMath.getReciprocalAngle(from, to);
-                    Point2D middle = FxMath.getMiddlePoint(from, to);
-
                     double shift = shiftMax - edgeIndex * edgeShift * 2;
-                    Point2D controlPoint = FxMath.shiftPoint(middle, angle, shift);
+                    double controlX = middleX + Math.cos(angle) * shift;
+                    double controlY = middleY + Math.sin(angle) * shift;
                     //Draw edge
                     gc.save();
                     gc.setLineWidth(4);
                     gc.setLineDashes(30);
                     gc.setStroke(EDGE_BORDER_COLOR);
                     gc.beginPath();
-                    gc.moveTo(from.getX() * zoom + shiftX, from.getY() * zoom + shiftY);
+                    gc.moveTo(fromX * zoom + shiftX, fromY * zoom + shiftY);
                     gc.quadraticCurveTo(
-                            controlPoint.getX() * zoom + shiftX,
-                            controlPoint.getY() * zoom + shiftY,
-                            to.getX() * zoom + shiftX,
-                            to.getY() * zoom + shiftY);
+                            controlX * zoom + shiftX,
+                            controlY * zoom + shiftY,
+                            toX * zoom + shiftX,
+                            toY * zoom + shiftY);
                     gc.stroke();
                     gc.setLineWidth(2);
                     if (edge.element().isSelected()) {
@@ -606,33 +1057,22 @@ public class GraphDrawer<V extends Selectable, E extends Selectable> extends Anc
                         gc.setStroke(EDGE_COLOR);
                     }
                     gc.beginPath();
-                    gc.moveTo(from.getX() * zoom + shiftX, from.getY() * zoom + shiftY);
+                    gc.moveTo(fromX * zoom + shiftX, fromY * zoom + shiftY);
                     gc.quadraticCurveTo(
-                            controlPoint.getX() * zoom + shiftX,
-                            controlPoint.getY() * zoom + shiftY,
-                            to.getX() * zoom + shiftX,
-                            to.getY() * zoom + shiftY);
+                            controlX * zoom + shiftX,
+                            controlY * zoom + shiftY,
+                            toX * zoom + shiftX,
+                            toY * zoom + shiftY);
                     gc.stroke();
 
                     //Draw edge text
-                    Point2D textLocation = FxMath.getMiddlePoint(middle, controlPoint);
-                    if (edge.element().isSelected()) {
-                        gc.setFill(SELECTED_TEXT_COLOR);
-                    } else {
-                        gc.setFill(TEXT_COLOR);
+                    if (labels) {
+                        drawLabel(
+                                edge.element().toString(),
+                                (middleX + controlX) / 2 * zoom + shiftX,
+                                (middleY + controlY) / 2 * zoom + shiftY,
+                                edge.element().isSelected());
                     }
-                    gc.setFont(new Font(20));
-                    gc.setStroke(TEXT_BORDER_COLOR);
-                    gc.setLineDashes(0);
-                    gc.setLineWidth(2);
-                    gc.strokeText(
-                            edge.element().toString(),
-                            textLocation.getX() * zoom + shiftX,
-                            textLocation.getY() * zoom + shiftY);
-                    gc.fillText(
-                            edge.element().toString(),
-                            textLocation.getX() * zoom + shiftX,
-                            textLocation.getY() * zoom + shiftY);
                     gc.restore();
                     edgeIndex++;
                 }
@@ -640,51 +1080,128 @@ public class GraphDrawer<V extends Selectable, E extends Selectable> extends Anc
         }
     }
 
-    private void cacheVertexEdges() {
-        Map<Vertex<V>, Set<Edge<E, V>>> vertexEdges = new HashMap<>();
+    /**
+     * Draws the visible edges as thin solid lines, parallel edges merged into one, all in a single path.
+     * A spot is drawn as selected if any of its edges is.
+     *
+     * @param selected Whether the selected or the remaining edge spots are drawn.
+     */
+    private void drawSimpleEdges(boolean selected) {
+        gc.save();
+        gc.setLineWidth(1);
+        gc.setLineDashes(0);
+        gc.setStroke(selected ? SELECTED_EDGE_COLOR : EDGE_COLOR);
+        gc.beginPath();
+        for (int k = 0; k < visibleCount; k++) {
+            int spot = visibleEdgeSpots[k];
+            boolean spotSelected = false;
+            for (Edge<E, V> edge : edgeSpots.get(spot)) {
+                spotSelected |= edge.element().isSelected();
+            }
+            if (spotSelected == selected) {
+                int from = spotEnds[2 * spot];
+                int to = spotEnds[2 * spot + 1];
+                gc.moveTo(nodeX(from) * zoom + shiftX, nodeY(from) * zoom + shiftY);
+                gc.lineTo(nodeX(to) * zoom + shiftX, nodeY(to) * zoom + shiftY);
+            }
+        }
+        gc.stroke();
+        gc.restore();
+    }
 
+    /**
+     * Groups the edges by the pair of nodes they connect, so that parallel edges can be drawn side by side.
+     * Loops are left out, as they are not drawn.
+     */
+    private void cacheVertexEdges() {
+        edgeSpotsCache = new HashMap<>();
         for (Edge<E, V> edge : graph.edges()) {
             Vertex<V>[] vertices = edge.vertices();
-            if (!vertexEdges.containsKey(vertices[0])) {
-                vertexEdges.put(vertices[0], new HashSet<>());
-            }
-            if (!vertexEdges.containsKey(vertices[1])) {
-                vertexEdges.put(vertices[1], new HashSet<>());
+            if (vertices[0] == vertices[1]) {
+                continue;
             }
-            vertexEdges.get(vertices[0]).add(edge);
-            vertexEdges.get(vertices[1]).add(edge);
+            Set<Vertex<V>> nodes = new HashSet<>(Arrays.asList(vertices));
+            edgeSpotsCache.computeIfAbsent(nodes, key -> new LinkedHashSet<>()).add(edge);
         }
+        edgeSpots = new ArrayList<>(edgeSpotsCache.values());
+        spotEnds = new int[edgeSpots.size() * 2];
+        spotEdgeCounts = new int[edgeSpots.size()];
+        for (int spot = 0; spot < edgeSpots.size(); spot++) {
+            spotEdgeCounts[spot] = edgeSpots.get(spot).size();
+            Vertex<V>[] vertices = edgeSpots.get(spot).iterator().next().vertices();
+            spotEnds[2 * spot] = engine.indexOf(vertices[0]);
+            spotEnds[2 * spot + 1] = engine.indexOf(vertices[1]);
+        }
+        indexStale = true;
+    }
 
-        edgeSpotsCache = new HashSet<>();
+    /**
+     * Measures the average distance between adjacent nodes, which sets how much detail is drawn at each zoom.
+     */
+    private void measureEdgeLength() {
+        double sum = 0;
+        for (int spot = 0; spot < edgeSpots.size(); spot++) {
+            double dx = nodeX(spotEnds[2 * spot]) - nodeX(spotEnds[2 * spot + 1]);
+            double dy = nodeY(spotEnds[2 * spot]) - nodeY(spotEnds[2 * spot + 1]);
+            sum += Math.sqrt(dx * dx + dy * dy);
+        }
+        averageEdgeLength = edgeSpots.isEmpty() ? 0 : sum / edgeSpots.size();
+    }
 
-        for (Map.Entry<Vertex<V>, Set<Edge<E, V>>> entry : vertexEdges.entrySet()) {
-            for (Vertex<V> vertex : graph.vertices()) {
-                if (entry.getKey() == vertex) continue;
-                Set<Edge<E, V>> edgeSpot = new HashSet<>();
-                for (Edge<E, V> edge : entry.getValue()) {
-                    Vertex<V>[] vertices = edge.vertices();
-                    if ((vertices[0] == entry.getKey() && vertices[1] == vertex)
-                            || (vertices[1] == entry.getKey() && vertices[0] == vertex)) {
-                        edgeSpot.add(edge);
-                    }
-                }
-                edgeSpotsCache.add(edgeSpot);
+    /**
+     * Obtains the length an average edge is drawn with, to which the level of detail is tied. Graphs without edges
+     * are always drawn in full detail.
+     *
+     * @return Length, in pixels.
+     */
+    private double edgePixels() {
+        return edgeSpots.isEmpty() ? Double.POSITIVE_INFINITY : averageEdgeLength * zoom;
+    }
+
+    /**
+     * Indexes the node positions and the edge spots, so that frames only draw what is on screen.
+     */
+    private void indexContent() {
+        int size = engine.vertexCount();
+        if (positionX.length < size) {
+            positionX = new double[size];
+            positionY = new double[size];
+        }
+        for (int i = 0; i < size; i++) {
+            positionX[i] = nodeX(i);
+            positionY[i] = nodeY(i);
+        }
+        culling.index(positionX, positionY, size, spotEnds, spotEdgeCounts, edgeSpots.size());
+        indexStale = false;
+    }
+
+    /**
+     * Lists every index up to a given amount, which is what is drawn when automatic zoom fits everything on screen.
+     *
+     * @param size Amount of indices.
+     * @return Array starting with 0, 1, 2... up to at least size - 1.
+     */
+    private int[] allIndices(int size) {
+        if (allIndices.length < size) {
+            allIndices = new int[size];
+            for (int i = 0; i < size; i++) {
+                allIndices[i] = i;
             }
         }
+        return allIndices;
     }
 
     /**
      * Draws a single node onto the canvas with the given parameters
      *
-     * @param point    Node location
+     * @param x        Node location, x coordinate
+     * @param y        Node location, y coordinate
      * @param size     Node diameter
      * @param selected Selection markings
      */
-    private void drawSingleNode(Point2D point, double size, boolean selected) {
-        double x = point.getX();
-        double y = point.getY();
+    private void drawSingleNode(double x, double y, double size, boolean selected) {
         if (renderNodeBorders) {
-            Color colorbuffer = (Color) gc.getFill();
+            Paint colorbuffer = gc.getFill();
             if (selected) {
                 gc.setFill(SELECTED_NODE_BORDER_COLOR);
             } else {
@@ -707,31 +1224,40 @@ public class GraphDrawer<V extends Selectable, E extends Selectable> extends Anc
      * Draws a single node and it's border centered around a point given the
      * size.
      *
-     * @param point    Node diameter
+     * @param x        Node location, x coordinate
+     * @param y        Node location, y coordinate
      * @param text     Adjacent text label
      * @param size     Node diameter
      * @param selected Selection markings
      */
-    private void drawSingleNode(Point2D point, String text, double size, boolean selected) {
-        drawSingleNode(point, size, selected);
-        gc.setFont(new Font(20));
-        if (selected) {
-            gc.setStroke(TEXT_BORDER_COLOR);
-            gc.setFill(SELECTED_TEXT_COLOR);
-        } else {
-            gc.setStroke(TEXT_BORDER_COLOR);
-            gc.setFill(TEXT_COLOR);
+    private void drawSingleNode(double x, double y, String text, double size, boolean selected) {
+        drawSingleNode(x, y, size, selected);
+        drawLabel(
+                text,
+                x * zoom + shiftX + size / 2 + 2,
+                y * zoom + shiftY + 4,
+                selected);
+    }
+
+    /**
+     * Draws an outlined label, copying it from the label atlas when it is there, and otherwise as text.
+     *
+     * @param text     Label text.
+     * @param x        Left end of the baseline, relative to the canvas.
+     * @param y        Baseline, relative to the canvas.
+     * @param selected Selection markings
+     */
+    private void drawLabel(String text, double x, double y, boolean selected) {
+        if (labelAtlas.draw(gc, text, selected, x, y)) {
+            return;
         }
+        gc.setFont(LABEL_FONT);
+        gc.setStroke(TEXT_BORDER_COLOR);
+        gc.setFill(selected ? SELECTED_TEXT_COLOR : TEXT_COLOR);
         gc.setLineDashes(0);
         gc.setLineWidth(2);
-        gc.strokeText(
-                text,
-                point.getX() * zoom + shiftX + size / 2 + 2,
-                point.getY() * zoom + shiftY + 4);
-        gc.fillText(
-                text,
-                point.getX() * zoom + shiftX + size / 2 + 2,
-                point.getY() * zoom + shiftY + 4);
+        gc.strokeText(text, x, y);
+        gc.fillText(text, x, y);
     }
 
     /**
@@ -771,4 +1297,4 @@ public class GraphDrawer<V extends Selectable, E extends Selectable> extends Anc
         );
     }
 
-}
\ No newline at end of file
+}
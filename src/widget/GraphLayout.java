@@ -0,0 +1,30 @@
+/*
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package widget;
+
+/**
+ * Algorithm that computes the coordinates of every node of a graph in one go, as opposed to the step by step
+ * simulation of a {@link LayoutEngine}.
+ */
+public interface GraphLayout {
+
+    /**
+     * Lays out the graph of an engine, replacing the coordinates of its nodes.
+     *
+     * @param engine Engine holding the graph.
+     */
+    void apply(LayoutEngine<?, ?> engine);
+}
@@ -0,0 +1,142 @@
+/*
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package widget;
+
+import javafx.scene.SnapshotParameters;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.Text;
+
+/**
+ * Texture holding outlined labels, so that drawing one is a single image copy instead of stroking and filling its
+ * text. The texture is split in slots of equal size, each label is rendered into one the first time it is drawn,
+ * and the least recently drawn label gives up its slot when they are all taken, as decided by {@link LabelSlots}.
+ * Labels too wide for a slot are not kept, and neither are new ones once a frame has rendered enough of them or
+ * used every slot, in which case the caller draws the text itself.
+ * It must only be used from the JavaFX application thread.
+ */
+final class LabelAtlas {
+
+    private static final int ATLAS_SIZE = 2048;         // pixels along each side of the texture
+    private static final int SLOT_WIDTH = 256;
+    private static final int SLOT_HEIGHT = 32;
+    private static final int BASELINE = 24;             // text baseline within a slot
+    private static final int PADDING = 2;               // room left of the text for its outline
+    private static final int SLOT_COLUMNS = ATLAS_SIZE / SLOT_WIDTH;
+    private static final int SLOTS = SLOT_COLUMNS * (ATLAS_SIZE / SLOT_HEIGHT);
+    private static final int MAX_RENDERS_PER_FRAME = 64;    // spreads the cost of a new view over several frames
+
+    private final Font font;
+    private final Color textColor;
+    private final Color selectedTextColor;
+    private final Color borderColor;
+
+    private WritableImage atlas = null;                 // created along with the first label
+    private Canvas scratch;                             // where labels are rendered before being copied over
+    private WritableImage stamp;
+    private SnapshotParameters snapshotParameters;
+    private final Text measure = new Text();
+
+    private final LabelSlots slots = new LabelSlots(SLOTS, SLOT_WIDTH, MAX_RENDERS_PER_FRAME);
+
+    /**
+     * Builds an empty atlas for labels with a given look.
+     *
+     * @param font              Label font.
+     * @param textColor         Fill of the text.
+     * @param selectedTextColor Fill of the text of selected elements.
+     * @param borderColor       Outline of the text.
+     */
+    LabelAtlas(Font font, Color textColor, Color selectedTextColor, Color borderColor) {
+        this.font = font;
+        this.textColor = textColor;
+        this.selectedTextColor = selectedTextColor;
+        this.borderColor = borderColor;
+        measure.setFont(font);
+    }
+
+    /**
+     * Starts a new frame. Labels drawn from then on are kept until the frame ends, and a new batch of them can be
+     * rendered.
+     */
+    void startFrame() {
+        slots.startFrame();
+    }
+
+    /**
+     * Draws a label, rendering it into the atlas if it is not there yet.
+     *
+     * @param gc       Destination.
+     * @param text     Label text.
+     * @param selected Whether the label is drawn as selected.
+     * @param x        Left end of the text baseline.
+     * @param y        Text baseline.
+     * @return false if the label could not be drawn from the atlas, and has to be drawn as text.
+     */
+    boolean draw(GraphicsContext gc, String text, boolean selected, double x, double y) {
+        int slot = slots.find(text, selected);
+        if (slot == LabelSlots.MISSING) {
+            if (!slots.canPlace()) {
+                return false;
+            }
+            measure.setText(text);
+            int width = (int) Math.ceil(measure.getLayoutBounds().getWidth()) + 2 * PADDING;
+            slot = slots.place(text, selected, width);
+            if (slot >= 0) {
+                render(text, selected, slot);
+            }
+        }
+        if (slot < 0) {
+            return false;
+        }
+        gc.drawImage(atlas,
+                slot % SLOT_COLUMNS * SLOT_WIDTH, slot / SLOT_COLUMNS * SLOT_HEIGHT,
+                slots.width(slot), SLOT_HEIGHT,
+                x - PADDING, y - BASELINE,
+                slots.width(slot), SLOT_HEIGHT);
+        return true;
+    }
+
+    /**
+     * Renders a label into a slot of the atlas.
+     */
+    private void render(String text, boolean selected, int slot) {
+        if (atlas == null) {
+            atlas = new WritableImage(ATLAS_SIZE, ATLAS_SIZE);
+            scratch = new Canvas(SLOT_WIDTH, SLOT_HEIGHT);
+            stamp = new WritableImage(SLOT_WIDTH, SLOT_HEIGHT);
+            snapshotParameters = new SnapshotParameters();
+            snapshotParameters.setFill(Color.TRANSPARENT);
+        }
+        GraphicsContext gc = scratch.getGraphicsContext2D();
+        gc.clearRect(0, 0, SLOT_WIDTH, SLOT_HEIGHT);
+        gc.setFont(font);
+        gc.setLineDashes(0);
+        gc.setLineWidth(2);
+        gc.setStroke(borderColor);
+        gc.setFill(selected ? selectedTextColor : textColor);
+        gc.strokeText(text, PADDING, BASELINE);
+        gc.fillText(text, PADDING, BASELINE);
+        scratch.snapshot(snapshotParameters, stamp);
+        atlas.getPixelWriter().setPixels(
+                slot % SLOT_COLUMNS * SLOT_WIDTH, slot / SLOT_COLUMNS * SLOT_HEIGHT,
+                SLOT_WIDTH, SLOT_HEIGHT,
+                stamp.getPixelReader(), 0, 0);
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package widget;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+
+/**
+ * Keeps track of which label sits in which slot of a label texture. Labels are rendered into a free slot the first
+ * time they are drawn, and the least recently drawn label gives up its slot when they are all taken, unless it was
+ * drawn in the current frame. Labels too wide for a slot are remembered as such, so that they are not measured
+ * again, and only a limited amount of labels is rendered per frame.
+ */
+public final class LabelSlots {
+
+    public static final int TOO_WIDE = -1;         // label kept out of the texture, drawn as text
+    public static final int MISSING = -2;          // label not in the texture, nor placed this frame
+
+    private final int slots;
+    private final int slotWidth;
+    private final int rendersPerFrame;
+    private final int[] widths;                    // width of the label in each slot
+
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);    // least recent first
+    private final Key probe = new Key();           // reused for lookups, so that drawing allocates nothing
+    private int usedSlots = 0;
+    private long frame = 0;
+    private int frameRenders = 0;
+
+    /**
+     * Builds an empty set of slots.
+     *
+     * @param slots           Amount of slots.
+     * @param slotWidth       Width of a slot, in pixels.
+     * @param rendersPerFrame Labels placed per frame at most, which spreads the cost of a new view over frames.
+     */
+    public LabelSlots(int slots, int slotWidth, int rendersPerFrame) {
+        this.slots = slots;
+        this.slotWidth = slotWidth;
+        this.rendersPerFrame = rendersPerFrame;
+        widths = new int[slots];
+    }
+
+    /**
+     * Starts a new frame. Labels drawn from then on keep their slots until the frame ends, and a new batch of them
+     * can be placed.
+     */
+    public void startFrame() {
+        frame++;
+        frameRenders = 0;
+    }
+
+    /**
+     * Looks a label up, marking it as drawn in the current frame.
+     *
+     * @param text     Label text.
+     * @param selected Whether the label is drawn as selected.
+     * @return Slot of the label, {@link #TOO_WIDE} or {@link #MISSING}.
+     */
+    public int find(String text, boolean selected) {
+        probe.text = text;
+        probe.selected = selected;
+        Entry entry = entries.get(probe);
+        if (entry == null) {
+            return MISSING;
+        }
+        entry.frame = frame;
+        return entry.slot;
+    }
+
+    /**
+     * Tests whether another label can still be placed in the current frame.
+     *
+     * @return true if fewer labels than allowed were placed.
+     */
+    public boolean canPlace() {
+        return frameRenders < rendersPerFrame;
+    }
+
+    /**
+     * Finds room for a label that is not in the texture yet, counting it as placed in the current frame.
+     *
+     * @param text     Label text.
+     * @param selected Whether the label is drawn as selected.
+     * @param width    Width of the rendered label, in pixels.
+     * @return Slot to render the label into, {@link #TOO_WIDE}, or {@link #MISSING} if every slot is in use.
+     */
+    public int place(String text, boolean selected, int width) {
+        frameRenders++;
+        if (width > slotWidth) {
+            entries.put(new Key(text, selected), new Entry(TOO_WIDE, frame));
+            trim();
+            return TOO_WIDE;
+        }
+        int slot;
+        if (usedSlots < slots) {
+            slot = usedSlots++;
+        } else {
+            slot = evict();
+            if (slot < 0) {
+                return MISSING;
+            }
+        }
+        widths[slot] = width;
+        entries.put(new Key(text, selected), new Entry(slot, frame));
+        return slot;
+    }
+
+    /**
+     * Returns the width of the label in a slot.
+     *
+     * @param slot Slot.
+     * @return Width, in pixels.
+     */
+    public int width(int slot) {
+        return widths[slot];
+    }
+
+    /**
+     * Frees the slot of the least recently drawn label, unless it was drawn in this frame, as the copies queued so
+     * far would then show whatever replaced it.
+     *
+     * @return Slot freed, or -1 if all of them are in use.
+     */
+    private int evict() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.frame == frame) {
+                return -1;
+            }
+            iterator.remove();
+            if (entry.slot >= 0) {
+                return entry.slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Forgets the least recently drawn labels too wide for a slot once they outnumber the slots, as they take no
+     * space in the texture and would otherwise pile up.
+     */
+    private void trim() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (entries.size() > 2 * slots && iterator.hasNext()) {
+            if (iterator.next().slot < 0) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static final class Key {
+        private String text;
+        private boolean selected;
+
+        private Key() {
+        }
+
+        private Key(String text, boolean selected) {
+            this.text = text;
+            this.selected = selected;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return selected == key.selected && text.equals(key.text);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(text) * 2 + (selected ? 1 : 0);
+        }
+    }
+
+    private static final class Entry {
+        private final int slot;                    // TOO_WIDE for labels too wide for a slot
+        private long frame;                        // last frame the label was drawn in
+
+        private Entry(int slot, long frame) {
+            this.slot = slot;
+            this.frame = frame;
+        }
+    }
+}
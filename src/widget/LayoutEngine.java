@@ -0,0 +1,1677 @@
+/*
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package widget;
+
+import tads.Graph;
+import tads.Graph.Edge;
+import tads.Graph.Vertex;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Force directed layout simulation of a graph, based on repulsion between every node and attraction between
+ * adjacent nodes.
+ * The engine does not depend on the JavaFX toolkit, so layouts can be computed on headless machines and only
+ * their coordinates shipped to the {@link GraphDrawer}.
+ * The simulation state is kept in primitive arrays indexed by the vertex ordinal, which is the order in which
+ * the graph iterates its vertices.
+ *
+ * @param <V> Node data type
+ * @param <E> Edge data type
+ * @author Cláudio Pereira <cad.pereira@campus.fct.unl.pt>
+ * @author José Pereira <jcpereira.dev@gmail.com>
+ */
+public class LayoutEngine<V, E> {
+
+    public static final double SPRING_FORCE = 1;        //force = SPRING_FORCE*Math.log(distance/SPRING_SCALE);
+    public static final double SPRING_SCALE = 1;
+    public static final double REPULSION_SCALE = 5000;  //repulsion distance = REPULSION_SCALE/distance²;
+    public static final double ANIMATION_SPEED = 1;
+
+    private static final double SPAWN_PADDING_FACTOR = 0.2;  //ratio of the spawn area left empty at each side
+
+    private Graph<V, E> graph;
+    private int numVertices = 0;
+    // Simulation state, indexed by the vertex ordinal
+    private Map<Vertex<V>, Integer> vertexIndices = new HashMap<>();
+    private List<Vertex<V>> indexedVertices = new ArrayList<>();
+    private double[] nodeX = new double[0];        // R² coordinates for each node
+    private double[] nodeY = new double[0];
+    private double[] forceX = new double[0];       // Node force vector for the current iteration
+    private double[] forceY = new double[0];
+    // Distinct neighbours of each node, neighbours of node i at adjacency[adjacencyStart[i]..adjacencyStart[i+1]]
+    private int[] adjacencyStart = new int[1];
+    private int[] adjacency = new int[0];
+
+    private double spawnWidth = 500;               //area where the nodes are initially spawned
+    private double spawnHeight = 500;
+    private GraphLayout initialLayout = new PivotMds();  //places the nodes of a new graph after the random spawn
+    private Long seed = null;                      //seed of the random source, restored on every new graph
+    private Random random = new Random();          //source of every random placement
+
+    // Barnes-Hut approximation
+    private RepulsionMode repulsionMode = RepulsionMode.EXACT;
+    private double barnesHutTheta = 0.8;           //ratio between cell size and distance under which cells get merged
+    private final QuadTree quadTree = new QuadTree();
+    private final int[] quadTreeStack = new int[QuadTree.STACK_SIZE];
+
+    // Vectorized exact repulsion
+    private boolean vectorizedRepulsion = false;   //whether exact repulsion uses the SIMD friendly kernel
+    private double[] pairX = new double[0];        //forces applied to a node by each other node, kernel scratch
+    private double[] pairY = new double[0];
+    private final LongAdder exactPairs = new LongAdder();   //node pairs whose exact repulsion was computed
+
+    // Cutoff grid
+    private double cutoffRadius = 200;             //distance beyond which nodes stop repelling each other
+    private final CellGrid cellGrid = new CellGrid();
+
+    // Fast multipole method
+    private int multipoleOrder = 4;                //order of the multipole and local expansions
+    private final MultipoleTree multipoleTree = new MultipoleTree();
+
+    // Cooling
+    private static final double COOLING_FACTOR = 0.99;   //temperature kept after each step of global cooling
+    private static final double ADAPTIVE_FACTOR = 0.95;   //temperature change of adaptive cooling (Hu's t)
+    private static final int ADAPTIVE_PROGRESS = 5;      //steps lowering the force needed to heat up
+    private static final double REHEAT_FACTOR = 0.1;     //ratio of the initial temperature restored by local changes
+    private CoolingSchedule coolingSchedule = CoolingSchedule.NONE;
+    private double initialTemperature = 50;        //node displacement per step after a reset
+    // Cooling state of every component when they are simulated apart, otherwise of the whole graph
+    private double[] temperature = {initialTemperature};
+    private double[] forceEnergy = {Double.POSITIVE_INFINITY};  //sum of the squared node forces of the last step
+    private int[] progress = {0};                  //consecutive steps that lowered the force energy
+    private double[] stepForce = {0};              //sum of the squared node forces of the current step
+
+    // Incremental updates
+    private static final int LOCAL_RADIUS = 2;           //hops around a change within which nodes are simulated again
+    private static final double SPAWN_JITTER = 0.5;      //distance of new nodes to their neighbours, in edge lengths
+    private boolean[] frozen = null;               //nodes left out of the simulation after a local change, if any
+
+    // Connected components
+    private static final int SMALL_COMPONENT = 64;       //components below this size always use exact repulsion
+    private static final int PACKING_INTERVAL = 50;      //steps between two packings of the components
+    private static final double PACKING_GAP = 50;        //space left between packed components, model space units
+    private static final double[] PACKING_WIDTHS = {1, 1.5, 2};  //row widths tried, relative to the side of a square
+    private boolean componentPacking = true;       //whether components are simulated apart and packed
+    // Nodes of component c at componentNodes[componentStart[c]..componentStart[c+1]]
+    private int[] componentStart = new int[1];
+    private int[] componentNodes = new int[0];
+    private int[] nodeComponent = new int[0];      //component of each node
+    private final ThreadLocal<ComponentScratch> componentScratch = ThreadLocal.withInitial(ComponentScratch::new);
+
+    // Convergence detection
+    private double convergenceThreshold = 0.1;     //maximum node displacement per step of a settled layout
+    private long stepCount = 0;
+    private long convergedStep = -1;               //step at which the layout settled, -1 while moving
+    private double kineticEnergy = 0;              //sum of the squared node displacements of the last step
+    private double maxDisplacement = 0;            //largest node displacement of the last step
+
+    // Parallel force computation
+    private static final int PARALLEL_THRESHOLD = 2048;  //minimum amount of nodes to split the force computation
+    private static final int PARALLEL_MIN_CHUNK = 256;   //minimum amount of nodes handled by a single task
+    private int parallelism = 1;
+    private ForkJoinPool forkJoinPool = null;
+    private final ThreadLocal<int[]> forceStack = ThreadLocal.withInitial(() -> new int[QuadTree.STACK_SIZE]);
+
+    /**
+     * Builds an engine without a graph.
+     */
+    public LayoutEngine() {
+    }
+
+    /**
+     * Builds an engine for a graph.
+     *
+     * @param graph Graph to lay out.
+     */
+    public LayoutEngine(Graph<V, E> graph) {
+        setGraph(graph);
+    }
+
+    /**
+     * Builds an engine for an anonymous graph given by its adjacency, such as a coarsened level of a graph.
+     * Nodes are only known by their ordinal, so vertex based methods can't be used.
+     *
+     * @param adjacencyStart Offset of the neighbours of each node within the adjacency, plus the adjacency length.
+     * @param adjacency      Distinct neighbours of every node, excluding the node itself.
+     * @param random         Random source, shared with the engine the graph was derived from.
+     */
+    LayoutEngine(int[] adjacencyStart, int[] adjacency, Random random) {
+        this.adjacencyStart = adjacencyStart;
+        this.adjacency = adjacency;
+        this.random = random;
+        numVertices = adjacencyStart.length - 1;
+        nodeX = new double[numVertices];
+        nodeY = new double[numVertices];
+        forceX = new double[numVertices];
+        forceY = new double[numVertices];
+        findComponents();
+        resetConvergence();
+        generateInitialSpawns(spawnWidth, spawnHeight,
+                SPAWN_PADDING_FACTOR * spawnWidth,
+                SPAWN_PADDING_FACTOR * spawnHeight);
+    }
+
+    /**
+     * Sets the graph to lay out. Its nodes are spawned at random locations within the spawn area, then placed by
+     * the initial layout, if any.
+     *
+     * @param graph Graph to lay out, or null to clear the engine.
+     */
+    public void setGraph(Graph<V, E> graph) {
+        this.graph = graph;
+        vertexIndices.clear();
+        indexedVertices.clear();
+        stepCount = 0;
+        resetConvergence();
+        if (seed != null) {
+            random = new Random(seed);
+        }
+        if (graph != null) {
+            indexVertices();
+            cacheAdjacency();
+            generateInitialSpawns(spawnWidth, spawnHeight,
+                    SPAWN_PADDING_FACTOR * spawnWidth,
+                    SPAWN_PADDING_FACTOR * spawnHeight);
+            if (initialLayout != null) {
+                initialLayout.apply(this);
+            }
+            packComponents();
+        } else {
+            numVertices = 0;
+            adjacencyStart = new int[1];
+            adjacency = new int[0];
+            componentStart = new int[1];
+            componentNodes = new int[0];
+            nodeComponent = new int[0];
+        }
+    }
+
+    /**
+     * Sets the area in which the nodes of the next graph are spawned.
+     *
+     * @param width  Width of the area.
+     * @param height Height of the area.
+     */
+    public void setSpawnArea(double width, double height) {
+        this.spawnWidth = width;
+        this.spawnHeight = height;
+    }
+
+    /**
+     * Catches up with vertices and edges added to or removed from the graph since it was set.
+     * Nodes that were already laid out keep their coordinates, while new nodes are placed next to the barycenter
+     * of their neighbours. Until the layout settles again, only the nodes a few hops away from a change are
+     * simulated, the others stay where they are.
+     */
+    public void refreshGraph() {
+        if (graph == null) {
+            return;
+        }
+        if (numVertices == 0) {
+            setGraph(graph);
+            return;
+        }
+        Map<Vertex<V>, Integer> oldIndices = vertexIndices;
+        double[] oldX = nodeX;
+        double[] oldY = nodeY;
+        int[] oldAdjacencyStart = adjacencyStart;
+        int[] oldAdjacency = adjacency;
+        if (!sameVertices()) {
+            vertexIndices = new HashMap<>();
+            indexedVertices = new ArrayList<>();
+            indexVertices();
+        }
+        cacheAdjacency();
+
+        int[] newIndex = new int[oldIndices.size()];
+        Arrays.fill(newIndex, -1);
+        boolean[] placed = new boolean[numVertices];
+        boolean[] changed = new boolean[numVertices];
+        boolean anyChange = numVertices != oldIndices.size();
+        for (int i = 0; i < numVertices; i++) {
+            Integer old = oldIndices.get(indexedVertices.get(i));
+            if (old == null) {
+                changed[i] = anyChange = true;
+            } else {
+                nodeX[i] = oldX[old];
+                nodeY[i] = oldY[old];
+                placed[i] = true;
+                newIndex[old] = i;
+            }
+        }
+        // Nodes whose neighbourhood changed, which includes the neighbours of removed nodes
+        int[] stamp = new int[numVertices];
+        Arrays.fill(stamp, -1);
+        for (int i = 0; i < numVertices; i++) {
+            Integer old = oldIndices.get(indexedVertices.get(i));
+            if (old == null) {
+                continue;
+            }
+            for (int k = adjacencyStart[i]; k < adjacencyStart[i + 1]; k++) {
+                stamp[adjacency[k]] = i;
+            }
+            int oldDegree = oldAdjacencyStart[old + 1] - oldAdjacencyStart[old];
+            boolean same = oldDegree == adjacencyStart[i + 1] - adjacencyStart[i];
+            for (int k = oldAdjacencyStart[old]; same && k < oldAdjacencyStart[old + 1]; k++) {
+                int neighbour = newIndex[oldAdjacency[k]];
+                same = neighbour >= 0 && stamp[neighbour] == i;
+            }
+            if (!same) {
+                changed[i] = anyChange = true;
+            }
+        }
+        if (!anyChange) {
+            return;
+        }
+        placeNewNodes(placed);
+        freezeAround(changed);
+        disturb();
+    }
+
+    /**
+     * Tests whether the graph still has the vertices it had when they were indexed, in the same order, in which case
+     * they keep their ordinals.
+     */
+    private boolean sameVertices() {
+        if (graph.vertexCount() != numVertices) {
+            return false;
+        }
+        int ordinal = 0;
+        for (Vertex<V> vertex : graph.vertices()) {
+            Integer index = vertexIndices.get(vertex);
+            if (index == null || index != ordinal++) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Places the nodes that have no coordinates yet around the barycenter of their placed neighbours.
+     * Nodes placed this way count as placed for their own neighbours, so chains of new nodes grow outwards.
+     * Nodes with no way to a placed node are spawned at random within the box of the placed ones.
+     *
+     * @param placed Nodes that already have coordinates, updated as nodes get placed.
+     */
+    private void placeNewNodes(boolean[] placed) {
+        double jitter = SPAWN_JITTER * averageEdgeLength(placed);
+        boolean progress = true;
+        while (progress) {
+            progress = false;
+            for (int i = 0; i < numVertices; i++) {
+                if (placed[i]) {
+                    continue;
+                }
+                double sumX = 0;
+                double sumY = 0;
+                int count = 0;
+                for (int k = adjacencyStart[i]; k < adjacencyStart[i + 1]; k++) {
+                    int j = adjacency[k];
+                    if (placed[j]) {
+                        sumX += nodeX[j];
+                        sumY += nodeY[j];
+                        count++;
+                    }
+                }
+                if (count > 0) {
+                    double angle = random.nextDouble() * 2 * Math.PI;
+                    nodeX[i] = sumX / count + Math.cos(angle) * jitter;
+                    nodeY[i] = sumY / count + Math.sin(angle) * jitter;
+                    placed[i] = progress = true;
+                }
+            }
+        }
+        double xMin, xMax, yMin, yMax;
+        xMin = yMin = Double.POSITIVE_INFINITY;
+        xMax = yMax = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < numVertices; i++) {
+            if (placed[i]) {
+                xMin = Math.min(xMin, nodeX[i]);
+                xMax = Math.max(xMax, nodeX[i]);
+                yMin = Math.min(yMin, nodeY[i]);
+                yMax = Math.max(yMax, nodeY[i]);
+            }
+        }
+        if (xMin > xMax) {
+            xMin = yMin = 0;
+            xMax = spawnWidth;
+            yMax = spawnHeight;
+        }
+        for (int i = 0; i < numVertices; i++) {
+            if (!placed[i]) {
+                nodeX[i] = xMin + random.nextDouble() * (xMax - xMin);
+                nodeY[i] = yMin + random.nextDouble() * (yMax - yMin);
+            }
+        }
+    }
+
+    /**
+     * Leaves out of the simulation every node farther than {@link #LOCAL_RADIUS} hops from a changed node.
+     *
+     * @param changed Changed nodes.
+     */
+    private void freezeAround(boolean[] changed) {
+        frozen = new boolean[numVertices];
+        Arrays.fill(frozen, true);
+        int[] queue = new int[numVertices];
+        int[] hops = new int[numVertices];
+        int head = 0;
+        int tail = 0;
+        for (int i = 0; i < numVertices; i++) {
+            if (changed[i]) {
+                frozen[i] = false;
+                queue[tail++] = i;
+            }
+        }
+        while (head < tail) {
+            int i = queue[head++];
+            if (hops[i] == LOCAL_RADIUS) {
+                continue;
+            }
+            for (int k = adjacencyStart[i]; k < adjacencyStart[i + 1]; k++) {
+                int j = adjacency[k];
+                if (frozen[j]) {
+                    frozen[j] = false;
+                    hops[j] = hops[i] + 1;
+                    queue[tail++] = j;
+                }
+            }
+        }
+    }
+
+    private boolean isFrozen(int index) {
+        return frozen != null && frozen[index];
+    }
+
+    /**
+     * Computes the average distance between adjacent nodes.
+     *
+     * @return Average edge length, or 1 if there are no edges.
+     */
+    double averageEdgeLength() {
+        return averageEdgeLength(null);
+    }
+
+    /**
+     * Computes the average distance between adjacent nodes, only counting the edges between some of them.
+     *
+     * @param counted Nodes whose edges are counted, or null to count every node.
+     * @return Average edge length, or 1 if no edge is counted.
+     */
+    private double averageEdgeLength(boolean[] counted) {
+        double sum = 0;
+        int count = 0;
+        for (int i = 0; i < numVertices; i++) {
+            if (counted != null && !counted[i]) {
+                continue;
+            }
+            for (int k = adjacencyStart[i]; k < adjacencyStart[i + 1]; k++) {
+                int j = adjacency[k];
+                if (counted == null || counted[j]) {
+                    sum += Math.hypot(nodeX[j] - nodeX[i], nodeY[j] - nodeY[i]);
+                    count++;
+                }
+            }
+        }
+        return count == 0 ? 1 : sum / count;
+    }
+
+    /**
+     * Sets the layout that places the nodes of the next graph, so that the simulation starts from a sensible
+     * layout instead of random spawns. A {@link PivotMds} is used by default.
+     *
+     * @param layout Initial layout, or null to leave the nodes at random spawns.
+     */
+    public void setInitialLayout(GraphLayout layout) {
+        this.initialLayout = layout;
+    }
+
+    /**
+     * Makes the layout reproducible. Once seeded, the random source is reset to the seed whenever a graph is set,
+     * so that the same graph, seed and amount of steps always give the same coordinates on the same JVM, also when
+     * simulating in parallel. Vertex ordinals follow the iteration order of the graph, which must be stable too.
+     *
+     * @param seed Seed of the random source.
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+        random = new Random(seed);
+    }
+
+    /**
+     * Returns the random source that layouts working on this engine must use, so that seeding the engine makes
+     * them reproducible as well.
+     *
+     * @return Random source.
+     */
+    Random random() {
+        return random;
+    }
+
+    /**
+     * Assigns an ordinal to every vertex and allocates the simulation state arrays.
+     */
+    private void indexVertices() {
+        for (Vertex<V> vertex : graph.vertices()) {
+            vertexIndices.put(vertex, indexedVertices.size());
+            indexedVertices.add(vertex);
+        }
+        numVertices = indexedVertices.size();
+        nodeX = new double[numVertices];
+        nodeY = new double[numVertices];
+        forceX = new double[numVertices];
+        forceY = new double[numVertices];
+    }
+
+    /**
+     * Caches the distinct neighbours of every node, by ascending ordinal, ignoring loops and parallel edges, and the
+     * connected components they form. Must be refreshed whenever the graph changes.
+     * The edges are only walked twice, as asking the graph for the edges of every vertex may cost as much as
+     * walking all of them each time.
+     */
+    private void cacheAdjacency() {
+        int[] ends = new int[2 * graph.edgeCount()];
+        int endCount = 0;
+        int[] degree = new int[numVertices + 1];
+        for (Edge<E, V> edge : graph.edges()) {
+            Vertex<V>[] vertices = edge.vertices();
+            int from = vertexIndices.get(vertices[0]);
+            int to = vertexIndices.get(vertices[1]);
+            if (from == to) {
+                continue;
+            }
+            if (endCount == ends.length) {
+                ends = Arrays.copyOf(ends, Math.max(2, 2 * endCount));
+            }
+            ends[endCount++] = from;
+            ends[endCount++] = to;
+            degree[from + 1]++;
+            degree[to + 1]++;
+        }
+        for (int i = 0; i < numVertices; i++) {
+            degree[i + 1] += degree[i];
+        }
+        int[] neighbours = new int[endCount];
+        int[] fill = Arrays.copyOf(degree, numVertices);
+        for (int k = 0; k < endCount; k += 2) {
+            neighbours[fill[ends[k]]++] = ends[k + 1];
+            neighbours[fill[ends[k + 1]]++] = ends[k];
+        }
+        // Sorting the neighbours of every node brings parallel edges together, so that they are dropped
+        adjacencyStart = new int[numVertices + 1];
+        int length = 0;
+        for (int i = 0; i < numVertices; i++) {
+            Arrays.sort(neighbours, degree[i], degree[i + 1]);
+            for (int k = degree[i]; k < degree[i + 1]; k++) {
+                if (k == degree[i] || neighbours[k] != neighbours[k - 1]) {
+                    neighbours[length++] = neighbours[k];
+                }
+            }
+            adjacencyStart[i + 1] = length;
+        }
+        adjacency = Arrays.copyOf(neighbours, length);
+        findComponents();
+    }
+
+    /**
+     * Groups the nodes by connected component, with a breadth first search over the cached adjacency.
+     * Components are numbered in the order of their first node and list their nodes by ascending ordinal.
+     */
+    private void findComponents() {
+        int[] label = new int[numVertices];
+        Arrays.fill(label, -1);
+        int[] queue = new int[numVertices];
+        int count = 0;
+        for (int i = 0; i < numVertices; i++) {
+            if (label[i] >= 0) {
+                continue;
+            }
+            label[i] = count;
+            queue[0] = i;
+            int head = 0;
+            int tail = 1;
+            while (head < tail) {
+                int node = queue[head++];
+                for (int k = adjacencyStart[node]; k < adjacencyStart[node + 1]; k++) {
+                    int neighbour = adjacency[k];
+                    if (label[neighbour] < 0) {
+                        label[neighbour] = count;
+                        queue[tail++] = neighbour;
+                    }
+                }
+            }
+            count++;
+        }
+        componentStart = new int[count + 1];
+        for (int i = 0; i < numVertices; i++) {
+            componentStart[label[i] + 1]++;
+        }
+        for (int c = 0; c < count; c++) {
+            componentStart[c + 1] += componentStart[c];
+        }
+        componentNodes = new int[numVertices];
+        int[] next = Arrays.copyOf(componentStart, count);
+        for (int i = 0; i < numVertices; i++) {
+            componentNodes[next[label[i]]++] = i;
+        }
+        nodeComponent = label;
+    }
+
+    /**
+     * Tests whether the components are simulated apart, which only happens when there is more than one.
+     */
+    private boolean separateComponents() {
+        return componentPacking && componentStart.length > 2;
+    }
+
+    /**
+     * Packs the components side by side, in rows of boxes sorted by decreasing height (shelf packing), keeping the
+     * upper left corner of the whole layout in place. A few row widths are tried, keeping the squarest result.
+     * Moving a whole component does not change the forces within it, so this does not disturb the simulation.
+     */
+    private void packComponents() {
+        if (!separateComponents()) {
+            return;
+        }
+        int count = componentStart.length - 1;
+        double[] boxes = new double[4 * count];     // xMin, yMin, xMax, yMax of every component
+        double left = Double.POSITIVE_INFINITY;
+        double top = Double.POSITIVE_INFINITY;
+        double area = 0;
+        double widest = 0;
+        Integer[] order = new Integer[count];
+        for (int c = 0; c < count; c++) {
+            double xMin, xMax, yMin, yMax;
+            xMin = yMin = Double.POSITIVE_INFINITY;
+            xMax = yMax = Double.NEGATIVE_INFINITY;
+            for (int k = componentStart[c]; k < componentStart[c + 1]; k++) {
+                int node = componentNodes[k];
+                xMin = Math.min(xMin, nodeX[node]);
+                xMax = Math.max(xMax, nodeX[node]);
+                yMin = Math.min(yMin, nodeY[node]);
+                yMax = Math.max(yMax, nodeY[node]);
+            }
+            boxes[4 * c] = xMin;
+            boxes[4 * c + 1] = yMin;
+            boxes[4 * c + 2] = xMax;
+            boxes[4 * c + 3] = yMax;
+            left = Math.min(left, xMin);
+            top = Math.min(top, yMin);
+            area += (xMax - xMin + PACKING_GAP) * (yMax - yMin + PACKING_GAP);
+            widest = Math.max(widest, xMax - xMin + PACKING_GAP);
+            order[c] = c;
+        }
+        // Stable sort, so that components of the same height keep their places between packings
+        Arrays.sort(order, Comparator.comparingDouble(c -> boxes[4 * c + 1] - boxes[4 * c + 3]));
+        double[] corners = new double[2 * count];
+        double[] best = new double[2 * count];
+        double bestSide = Double.POSITIVE_INFINITY;
+        for (double factor : PACKING_WIDTHS) {
+            double side = shelfPack(order, boxes, Math.max(widest, factor * Math.sqrt(area)), corners);
+            if (side < bestSide) {
+                bestSide = side;
+                System.arraycopy(corners, 0, best, 0, corners.length);
+            }
+        }
+        for (int c = 0; c < count; c++) {
+            double dx = left + best[2 * c] - boxes[4 * c];
+            double dy = top + best[2 * c + 1] - boxes[4 * c + 1];
+            for (int k = componentStart[c]; k < componentStart[c + 1]; k++) {
+                int node = componentNodes[k];
+                nodeX[node] += dx;
+                nodeY[node] += dy;
+            }
+        }
+    }
+
+    /**
+     * Places boxes in rows, left to right, starting a new row whenever a box would make the current one too wide.
+     *
+     * @param order    Boxes in placement order.
+     * @param boxes    xMin, yMin, xMax, yMax of every box.
+     * @param rowWidth Width rows are not allowed to exceed, unless holding a single box.
+     * @param corners  Destination of the upper left corner of every box, relative to the packing.
+     * @return Longest side of the packing.
+     */
+    private static double shelfPack(Integer[] order, double[] boxes, double rowWidth, double[] corners) {
+        double x = 0;
+        double y = 0;
+        double rowHeight = 0;
+        double packingWidth = 0;
+        for (int c : order) {
+            double width = boxes[4 * c + 2] - boxes[4 * c] + PACKING_GAP;
+            double height = boxes[4 * c + 3] - boxes[4 * c + 1] + PACKING_GAP;
+            if (x > 0 && x + width > rowWidth) {
+                x = 0;
+                y += rowHeight;
+                rowHeight = 0;
+            }
+            corners[2 * c] = x;
+            corners[2 * c + 1] = y;
+            x += width;
+            rowHeight = Math.max(rowHeight, height);
+            packingWidth = Math.max(packingWidth, x);
+        }
+        return Math.max(packingWidth, y + rowHeight);
+    }
+
+    /**
+     * Generates initial spawn locations for all nodes with an area constrained
+     * by the areas boundaries and the padding.
+     *
+     * @param xBoundary x boundary of the drawing area in the model space.
+     * @param yBoundary y boundary of the drawing area in the model space.
+     * @param xPadding  x padding.
+     * @param yPadding  y padding.
+     */
+    public void generateInitialSpawns(double xBoundary, double yBoundary, double xPadding, double yPadding) {
+        for (int i = 0; i < numVertices; i++) {
+            nodeX[i] = random.nextDouble()
+                    * (Math.pow(numVertices, .3)
+                    * xBoundary - 2 * xPadding)
+                    + xPadding;
+            nodeY[i] = random.nextDouble() * (Math.pow(numVertices, .3)
+                    * yBoundary - 2 * yPadding)
+                    + yPadding;
+        }
+        resetConvergence();
+    }
+
+    /**
+     * Applies a simulation step
+     *
+     * @param ignoreNode Optional ID of a node to be ignored (eg. being dragged)
+     */
+    public void simulateSingleStep(Vertex<V> ignoreNode) {
+        initForces();
+        computeForces();
+        applyForce(ignoreNode);
+        stepCount++;
+        boolean settled = convergedStep < 0 && maxDisplacement < convergenceThreshold;
+        if (settled) {
+            convergedStep = stepCount;
+            frozen = null;
+        }
+        // Packing while a node is held would pull its component away from the pointer
+        if (ignoreNode == null && (settled || stepCount % PACKING_INTERVAL == 0)) {
+            packComponents();
+        }
+    }
+
+    /**
+     * Advances the simulation a determined amount of steps.
+     *
+     * @param steps Amount of steps to advance.
+     */
+    public void advanceSteps(int steps) {
+        for (int i = 0; i < steps; i++) {
+            simulateSingleStep(null);
+        }
+    }
+
+    /**
+     * Resets node forces
+     */
+    private void initForces() {
+        Arrays.fill(forceX, 0);
+        Arrays.fill(forceY, 0);
+    }
+
+    /**
+     * Computes the forces that are applied to every node.
+     * Repulsion is computed between every pair of nodes, attraction only between adjacent nodes.
+     * Big graphs are split in ranges of nodes which are computed in parallel when the parallelism allows it.
+     */
+    private void computeForces() {
+        if (separateComponents()) {
+            computeComponentForces();
+            return;
+        }
+        if (repulsionMode == RepulsionMode.FMM && frozen == null) {
+            // Computed for every node at once, only the attraction is split by node
+            multipoleTree.build(nodeX, nodeY, numVertices);
+            multipoleTree.accumulateRepulsion(REPULSION_SCALE, forceX, forceY);
+            if (forkJoinPool != null && numVertices >= PARALLEL_THRESHOLD) {
+                int chunk = Math.max(PARALLEL_MIN_CHUNK, numVertices / (parallelism * 8));
+                forkJoinPool.invoke(new AttractionTask(0, numVertices, chunk));
+            } else {
+                computeAttractiveForces(0, numVertices);
+            }
+            return;
+        }
+        // The multipole expansions would be computed for every node, so a local change walks the quadtree instead
+        if (repulsionMode == RepulsionMode.BARNES_HUT || repulsionMode == RepulsionMode.FMM) {
+            quadTree.build(nodeX, nodeY, numVertices);
+        } else if (repulsionMode == RepulsionMode.GRID) {
+            cellGrid.build(nodeX, nodeY, numVertices, cutoffRadius);
+        }
+        if (forkJoinPool != null && numVertices >= PARALLEL_THRESHOLD) {
+            int chunk = Math.max(PARALLEL_MIN_CHUNK, numVertices / (parallelism * 8));
+            forkJoinPool.invoke(new ForceTask(0, numVertices, chunk));
+        } else if (repulsionMode == RepulsionMode.EXACT && frozen == null) {
+            exactPairs.add((long) numVertices * (numVertices - 1) / 2);
+            if (vectorizedRepulsion) {
+                if (pairX.length < numVertices) {
+                    pairX = new double[numVertices];
+                    pairY = new double[numVertices];
+                }
+                computeVectorizedRepulsion(nodeX, nodeY, numVertices, forceX, forceY, pairX, pairY);
+            } else {
+                computeSymmetricRepulsion(nodeX, nodeY, numVertices, forceX, forceY);
+            }
+            computeAttractiveForces(0, numVertices);
+        } else {
+            computeForces(0, numVertices, quadTreeStack);
+        }
+    }
+
+    /**
+     * Adds the exact repulsion between every pair of nodes to their forces, visiting each pair only once and
+     * applying opposite forces to both nodes.
+     * Every node force still gets its terms summed in the order of the other node ordinals, so the result is
+     * identical to summing node by node, at half the cost. It must run while the forces are still zeroed.
+     *
+     * @param nodeX  X coordinates of the nodes.
+     * @param nodeY  Y coordinates of the nodes.
+     * @param count  Amount of nodes.
+     * @param forceX Destination of the horizontal forces.
+     * @param forceY Destination of the vertical forces.
+     */
+    private static void computeSymmetricRepulsion(double[] nodeX, double[] nodeY, int count,
+                                                  double[] forceX, double[] forceY) {
+        for (int i = 0; i < count; i++) {
+            double x = nodeX[i];
+            double y = nodeY[i];
+            double sumX = forceX[i];
+            double sumY = forceY[i];
+            for (int j = i + 1; j < count; j++) {
+                double dx = nodeX[j] - x;
+                double dy = nodeY[j] - y;
+                double factor = FxMath.repellingFactor(dx * dx + dy * dy, REPULSION_SCALE);
+                double pairX = dx * factor;
+                double pairY = dy * factor;
+                sumX += pairX;
+                sumY += pairY;
+                forceX[j] -= pairX;
+                forceY[j] -= pairY;
+            }
+            forceX[i] = sumX;
+            forceY[i] = sumY;
+        }
+    }
+
+    /**
+     * Computes the forces applied to a range of nodes.
+     * Only the forces of the nodes within the range get written, so that disjoint ranges can be computed
+     * concurrently. Each node force is always summed in the same order, whichever thread computes it.
+     *
+     * @param from  First node of the range.
+     * @param to    Node after the last one of the range.
+     * @param stack Quadtree traversal stack owned by the calling thread.
+     */
+    private void computeForces(int from, int to, int[] stack) {
+        if (repulsionMode == RepulsionMode.BARNES_HUT || repulsionMode == RepulsionMode.FMM) {
+            for (int i = from; i < to; i++) {
+                if (isFrozen(i)) {
+                    continue;
+                }
+                quadTree.accumulateRepulsion(i, barnesHutTheta, REPULSION_SCALE, forceX, forceY, stack);
+            }
+        } else if (repulsionMode == RepulsionMode.GRID) {
+            for (int i = from; i < to; i++) {
+                if (isFrozen(i)) {
+                    continue;
+                }
+                cellGrid.accumulateRepulsion(i, cutoffRadius, REPULSION_SCALE, forceX, forceY);
+            }
+        } else {
+            int rows = 0;
+            for (int i = from; i < to; i++) {
+                if (isFrozen(i)) {
+                    continue;
+                }
+                computeRowRepulsion(nodeX, nodeY, numVertices, i, forceX, forceY);
+                rows++;
+            }
+            exactPairs.add((long) rows * (numVertices - 1));
+        }
+        computeAttractiveForces(from, to);
+    }
+
+    /**
+     * Adds the exact repulsion of every other node to the force of a single node.
+     * Unlike the symmetric kernels, no other force is written, so that the nodes left out of the simulation cost
+     * nothing but being read.
+     *
+     * @param nodeX  X coordinates of the nodes.
+     * @param nodeY  Y coordinates of the nodes.
+     * @param count  Amount of nodes.
+     * @param row    Node whose force is computed.
+     * @param forceX Destination of the horizontal forces.
+     * @param forceY Destination of the vertical forces.
+     */
+    private static void computeRowRepulsion(double[] nodeX, double[] nodeY, int count, int row,
+                                            double[] forceX, double[] forceY) {
+        double x = nodeX[row];
+        double y = nodeY[row];
+        double sumX = 0;
+        double sumY = 0;
+        for (int j = 0; j < count; j++) {
+            if (row == j) {
+                continue;
+            }
+            double dx = nodeX[j] - x;
+            double dy = nodeY[j] - y;
+            double factor = FxMath.repellingFactor(dx * dx + dy * dy, REPULSION_SCALE);
+            sumX += dx * factor;
+            sumY += dy * factor;
+        }
+        forceX[row] += sumX;
+        forceY[row] += sumY;
+    }
+
+    /**
+     * Same as {@link #computeSymmetricRepulsion(double[], double[], int, double[], double[])}, but the pairs of each
+     * node are first evaluated by a kernel the JIT turns into SIMD instructions, and only then summed. Results differ
+     * from the scalar loop by rounding.
+     *
+     * @param pairX Scratch space for the horizontal pair forces, at least as long as the amount of nodes.
+     * @param pairY Scratch space for the vertical pair forces, at least as long as the amount of nodes.
+     */
+    private static void computeVectorizedRepulsion(double[] nodeX, double[] nodeY, int count,
+                                                   double[] forceX, double[] forceY,
+                                                   double[] pairX, double[] pairY) {
+        for (int i = 0; i < count; i++) {
+            FxMath.repellingForces(nodeX[i], nodeY[i], nodeX, nodeY, i + 1, count, REPULSION_SCALE,
+                    pairX, pairY, forceX, forceY);
+            double sumX = forceX[i];
+            double sumY = forceY[i];
+            for (int j = i + 1; j < count; j++) {
+                sumX += pairX[j];
+                sumY += pairY[j];
+            }
+            forceX[i] = sumX;
+            forceY[i] = sumY;
+        }
+    }
+
+    /**
+     * Computes the forces of a graph made of several components, each node being repelled only by the nodes of its
+     * own component, as if every component was a graph of its own. The cost is the sum of the squared component
+     * sizes instead of the squared node count, and components no longer push each other away, packing keeps them
+     * together instead.
+     * Groups of components are computed in parallel when the parallelism allows it.
+     */
+    private void computeComponentForces() {
+        int count = componentStart.length - 1;
+        if (forkJoinPool != null && numVertices >= PARALLEL_THRESHOLD) {
+            int chunk = Math.max(PARALLEL_MIN_CHUNK, numVertices / (parallelism * 8));
+            forkJoinPool.invoke(new ComponentTask(0, count, chunk));
+        } else {
+            computeComponentForces(0, count);
+        }
+    }
+
+    /**
+     * Computes the forces applied to the nodes of a range of components.
+     * Only the forces of those nodes get written, so that disjoint ranges can be computed concurrently.
+     *
+     * @param from First component of the range.
+     * @param to   Component after the last one of the range.
+     */
+    private void computeComponentForces(int from, int to) {
+        ComponentScratch scratch = componentScratch.get();
+        for (int c = from; c < to; c++) {
+            computeComponentRepulsion(c, scratch);
+            int size = componentStart[c + 1] - componentStart[c];
+            for (int k = componentStart[c]; k < componentStart[c + 1]; k++) {
+                int node = componentNodes[k];
+                if (!isFrozen(node)) {
+                    computeAttractiveForce(node, size);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the repulsion between the nodes of a component to their forces.
+     * The component coordinates are gathered into contiguous arrays first, so that every repulsion mode works on
+     * them unchanged. Small components always use the exact computation, which is the cheapest for them.
+     * After a local change only the nodes still simulated get their repulsion computed, and components with none
+     * of them are skipped.
+     *
+     * @param component Component ordinal.
+     * @param scratch   Scratch space owned by the calling thread.
+     */
+    private void computeComponentRepulsion(int component, ComponentScratch scratch) {
+        int start = componentStart[component];
+        int size = componentStart[component + 1] - start;
+        if (size < 2) {
+            return;
+        }
+        scratch.ensureCapacity(size);
+        double[] x = scratch.x;
+        double[] y = scratch.y;
+        double[] sumX = scratch.forceX;
+        double[] sumY = scratch.forceY;
+        int simulated = 0;
+        for (int k = 0; k < size; k++) {
+            int node = componentNodes[start + k];
+            x[k] = nodeX[node];
+            y[k] = nodeY[node];
+            sumX[k] = 0;
+            sumY[k] = 0;
+            if (!isFrozen(node)) {
+                simulated++;
+            }
+        }
+        if (simulated == 0) {
+            return;
+        }
+        boolean local = simulated < size;
+        if (local && (size < SMALL_COMPONENT || repulsionMode == RepulsionMode.EXACT)) {
+            for (int k = 0; k < size; k++) {
+                if (!isFrozen(componentNodes[start + k])) {
+                    computeRowRepulsion(x, y, size, k, sumX, sumY);
+                }
+            }
+            exactPairs.add((long) simulated * (size - 1));
+        } else if (size < SMALL_COMPONENT || repulsionMode == RepulsionMode.EXACT) {
+            exactPairs.add((long) size * (size - 1) / 2);
+            if (vectorizedRepulsion) {
+                computeVectorizedRepulsion(x, y, size, sumX, sumY, scratch.pairX, scratch.pairY);
+            } else {
+                computeSymmetricRepulsion(x, y, size, sumX, sumY);
+            }
+        } else if (repulsionMode == RepulsionMode.FMM && !local) {
+            if (scratch.multipoleTree.getOrder() != multipoleOrder) {
+                scratch.multipoleTree.setOrder(multipoleOrder);
+            }
+            scratch.multipoleTree.build(x, y, size);
+            scratch.multipoleTree.accumulateRepulsion(REPULSION_SCALE, sumX, sumY);
+        } else if (repulsionMode == RepulsionMode.BARNES_HUT || repulsionMode == RepulsionMode.FMM) {
+            scratch.quadTree.build(x, y, size);
+            for (int k = 0; k < size; k++) {
+                if (!isFrozen(componentNodes[start + k])) {
+                    scratch.quadTree.accumulateRepulsion(k, barnesHutTheta, REPULSION_SCALE, sumX, sumY,
+                            scratch.stack);
+                }
+            }
+        } else {
+            scratch.cellGrid.build(x, y, size, cutoffRadius);
+            for (int k = 0; k < size; k++) {
+                if (!isFrozen(componentNodes[start + k])) {
+                    scratch.cellGrid.accumulateRepulsion(k, cutoffRadius, REPULSION_SCALE, sumX, sumY);
+                }
+            }
+        }
+        for (int k = 0; k < size; k++) {
+            int node = componentNodes[start + k];
+            forceX[node] += sumX[k];
+            forceY[node] += sumY[k];
+        }
+    }
+
+    /**
+     * Adds the attraction between adjacent nodes to the forces of a range of nodes.
+     * Walks the cached adjacency, so that the cost is proportional to the amount of edges.
+     *
+     * @param from First node of the range.
+     * @param to   Node after the last one of the range.
+     */
+    private void computeAttractiveForces(int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (isFrozen(i)) {
+                continue;
+            }
+            computeAttractiveForce(i, numVertices);
+        }
+    }
+
+    /**
+     * Adds the attraction of its neighbours to the force of a node.
+     *
+     * @param i    Node ordinal.
+     * @param size Amount of nodes of the simulated system, which weakens the attraction to balance the repulsion.
+     */
+    private void computeAttractiveForce(int i, int size) {
+        double x = nodeX[i];
+        double y = nodeY[i];
+        double sumX = 0;
+        double sumY = 0;
+        for (int k = adjacencyStart[i]; k < adjacencyStart[i + 1]; k++) {
+            int j = adjacency[k];
+            double dx = nodeX[j] - x;
+            double dy = nodeY[j] - y;
+            double factor = FxMath.attractiveFactor(dx * dx + dy * dy, size, SPRING_FORCE, SPRING_SCALE);
+            sumX += dx * factor;
+            sumY += dy * factor;
+        }
+        forceX[i] += sumX;
+        forceY[i] += sumY;
+    }
+
+    /**
+     * Applies computed forces.
+     *
+     * @param ignoreNode Optional ID of a node to be ignored (eg. being dragged)
+     */
+    private void applyForce(Vertex<V> ignoreNode) {
+        int ignoredIndex = ignoreNode == null ? -1 : vertexIndices.get(ignoreNode);
+        boolean cooling = coolingSchedule != CoolingSchedule.NONE;
+        matchCoolingStates();
+        boolean perComponent = temperature.length > 1;
+        Arrays.fill(stepForce, 0);
+        double energy = 0;
+        double maxSquaredDisplacement = 0;
+        for (int i = 0; i < numVertices; i++) {
+            if (i == ignoredIndex || isFrozen(i)) {
+                continue;
+            }
+            int state = perComponent ? nodeComponent[i] : 0;
+            double dx = ANIMATION_SPEED * forceX[i];
+            double dy = ANIMATION_SPEED * forceY[i];
+            double squaredDisplacement = dx * dx + dy * dy;
+            if (cooling && squaredDisplacement > 0) {
+                // Move a fixed step along the force, its strength only matters to the cooling
+                double ratio = temperature[state] / Math.sqrt(squaredDisplacement);
+                dx *= ratio;
+                dy *= ratio;
+                squaredDisplacement = temperature[state] * temperature[state];
+            }
+            nodeX[i] += dx;
+            nodeY[i] += dy;
+            stepForce[state] += forceX[i] * forceX[i] + forceY[i] * forceY[i];
+            energy += squaredDisplacement;
+            maxSquaredDisplacement = Math.max(maxSquaredDisplacement, squaredDisplacement);
+        }
+        kineticEnergy = energy;
+        maxDisplacement = Math.sqrt(maxSquaredDisplacement);
+        for (int state = 0; state < temperature.length; state++) {
+            cool(state, stepForce[state]);
+        }
+    }
+
+    /**
+     * Updates a temperature after a step.
+     *
+     * @param state      Cooling state, the ordinal of a component when they are simulated apart, otherwise 0.
+     * @param totalForce Sum of the squared forces of the step.
+     */
+    private void cool(int state, double totalForce) {
+        if (coolingSchedule == CoolingSchedule.GLOBAL) {
+            temperature[state] *= COOLING_FACTOR;
+        } else if (coolingSchedule == CoolingSchedule.ADAPTIVE) {
+            if (totalForce < forceEnergy[state]) {
+                if (++progress[state] >= ADAPTIVE_PROGRESS) {
+                    progress[state] = 0;
+                    temperature[state] = Math.min(temperature[state] / ADAPTIVE_FACTOR, initialTemperature);
+                }
+            } else {
+                progress[state] = 0;
+                temperature[state] *= ADAPTIVE_FACTOR;
+            }
+        }
+        forceEnergy[state] = totalForce;
+    }
+
+    /**
+     * Keeps a cooling state per component when they are simulated apart, so that each one cools at its own pace,
+     * or a single one otherwise. States created this way start at the highest temperature of the previous ones.
+     */
+    private void matchCoolingStates() {
+        int states = separateComponents() ? componentStart.length - 1 : 1;
+        if (temperature.length != states) {
+            double hottest = getTemperature();
+            temperature = new double[states];
+            Arrays.fill(temperature, hottest);
+            forceEnergy = new double[states];
+            Arrays.fill(forceEnergy, Double.POSITIVE_INFINITY);
+            progress = new int[states];
+            stepForce = new double[states];
+        }
+    }
+
+    /**
+     * Computes a box around the graph that contains all of its nodes.
+     *
+     * @return xMin, yMin, xMax, yMax (upper left and lower right corners of the box).
+     */
+    public double[] getBoundaries() {
+        return getBoundaries(nodeX, nodeY, numVertices);
+    }
+
+    /**
+     * Computes a box that contains a set of nodes.
+     *
+     * @param nodeX X coordinates of the nodes.
+     * @param nodeY Y coordinates of the nodes.
+     * @param count Amount of nodes.
+     * @return xMin, yMin, xMax, yMax (upper left and lower right corners of the box).
+     */
+    static double[] getBoundaries(double[] nodeX, double[] nodeY, int count) {
+        double xMin, xMax, yMin, yMax;
+        xMin = yMin = Double.MAX_VALUE;
+        xMax = yMax = Double.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            double x = nodeX[i];
+            double y = nodeY[i];
+            xMin = (x < xMin) ? x : xMin;
+            yMin = (y < yMin) ? y : yMin;
+            xMax = (x > xMax) ? x : xMax;
+            yMax = (y > yMax) ? y : yMax;
+        }
+
+        return new double[]{xMin, yMin, xMax, yMax};
+    }
+
+    /**
+     * Selects how the repulsion between nodes is computed. Changing the forces this way, or through any of the
+     * parameters of the repulsion modes, unsettles the layout so that it is simulated under the new forces.
+     *
+     * @param mode Repulsion mode.
+     */
+    public void setRepulsionMode(RepulsionMode mode) {
+        this.repulsionMode = mode;
+        disturb();
+    }
+
+    /**
+     * Sets the opening angle used by the Barnes-Hut approximation.
+     * Lower values are more accurate, higher values are faster. 0 results in the exact computation.
+     *
+     * @param theta Ratio between a cell size and its distance to a node below which the cell is approximated.
+     */
+    public void setBarnesHutTheta(double theta) {
+        if (theta < 0) {
+            throw new IllegalArgumentException("Theta can't be negative");
+        }
+        this.barnesHutTheta = theta;
+        disturb();
+    }
+
+    /**
+     * Sets the order of the expansions used in {@link RepulsionMode#FMM} mode. Each order divides the error by
+     * two to three, and makes the translations between cells quadratically more expensive. 4 is the default.
+     *
+     * @param order Expansion order, from 0 to {@link MultipoleTree#MAX_ORDER}.
+     */
+    public void setMultipoleOrder(int order) {
+        multipoleTree.setOrder(order);
+        this.multipoleOrder = order;
+        disturb();
+    }
+
+    /**
+     * Sets the largest node displacement per step under which the layout is considered settled.
+     *
+     * @param threshold Displacement, in model space units.
+     */
+    public void setConvergenceThreshold(double threshold) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("Threshold can't be negative");
+        }
+        this.convergenceThreshold = threshold;
+        resetConvergence();
+    }
+
+    /**
+     * Chooses whether exact repulsion is computed by a kernel laid out for SIMD instructions, which evaluates
+     * several node pairs per instruction on CPUs supporting them. It only applies to single threaded exact steps.
+     *
+     * @param vectorized true to use the SIMD friendly kernel.
+     */
+    public void setVectorizedRepulsion(boolean vectorized) {
+        this.vectorizedRepulsion = vectorized;
+        disturb();
+    }
+
+    /**
+     * Chooses whether the connected components of the graph are simulated apart and packed side by side.
+     * Otherwise every node repels every other, which keeps pushing disconnected parts away from each other.
+     *
+     * @param packing true to simulate and pack the components apart.
+     */
+    public void setComponentPacking(boolean packing) {
+        this.componentPacking = packing;
+        packComponents();
+        resetConvergence();
+    }
+
+    /**
+     * Returns the amount of connected components of the graph.
+     *
+     * @return Component count.
+     */
+    public int componentCount() {
+        return componentStart.length - 1;
+    }
+
+    /**
+     * Sets the distance beyond which nodes stop repelling each other in {@link RepulsionMode#GRID} mode.
+     * Smaller radii make steps cheaper, but let distant parts of the graph drift into each other.
+     *
+     * @param radius Cutoff radius, in model space units.
+     */
+    public void setCutoffRadius(double radius) {
+        if (!(radius > 0)) {
+            throw new IllegalArgumentException("Cutoff radius must be positive");
+        }
+        this.cutoffRadius = radius;
+        disturb();
+    }
+
+    /**
+     * Tests whether the layout has settled, that is, a step moved no node further than the convergence threshold.
+     * The layout stops being converged once it is changed from outside (eg. a node is dragged).
+     *
+     * @return Convergence state.
+     */
+    public boolean isConverged() {
+        return convergedStep >= 0;
+    }
+
+    /**
+     * Returns the step at which the layout settled.
+     *
+     * @return Step number, or -1 if the layout did not settle yet.
+     */
+    public long getConvergedStep() {
+        return convergedStep;
+    }
+
+    /**
+     * Forgets about a previous convergence, so that the layout is simulated again.
+     */
+    public void resetConvergence() {
+        disturb();
+        Arrays.fill(temperature, initialTemperature);
+        frozen = null;
+    }
+
+    /**
+     * Forgets about a previous convergence after a local change, restoring only a fraction of the initial
+     * temperature, so that the nodes far from the change are not shaken.
+     */
+    private void disturb() {
+        convergedStep = -1;
+        maxDisplacement = Double.POSITIVE_INFINITY;
+        kineticEnergy = Double.POSITIVE_INFINITY;
+        matchCoolingStates();
+        for (int state = 0; state < temperature.length; state++) {
+            temperature[state] = Math.max(temperature[state], initialTemperature * REHEAT_FACTOR);
+        }
+        Arrays.fill(forceEnergy, Double.POSITIVE_INFINITY);
+        Arrays.fill(progress, 0);
+    }
+
+    /**
+     * Selects how far nodes move on every step. Defaults to {@link CoolingSchedule#NONE}, the original behavior.
+     *
+     * @param schedule Cooling schedule.
+     */
+    public void setCoolingSchedule(CoolingSchedule schedule) {
+        this.coolingSchedule = schedule;
+        resetConvergence();
+    }
+
+    /**
+     * Sets the distance nodes move in a single step after the layout is reset, when cooling.
+     *
+     * @param temperature Displacement, in model space units.
+     */
+    public void setInitialTemperature(double temperature) {
+        if (!(temperature > 0)) {
+            throw new IllegalArgumentException("Temperature must be positive");
+        }
+        this.initialTemperature = temperature;
+        resetConvergence();
+    }
+
+    /**
+     * Returns the distance nodes currently move in a single step, when cooling. Components simulated apart cool
+     * on their own, in which case this is the distance the nodes of the hottest one move.
+     *
+     * @return Displacement, in model space units.
+     */
+    public double getTemperature() {
+        double hottest = 0;
+        for (double value : temperature) {
+            hottest = Math.max(hottest, value);
+        }
+        return hottest;
+    }
+
+    /**
+     * Returns the amount of steps simulated since the graph was set.
+     *
+     * @return Step count.
+     */
+    public long getStepCount() {
+        return stepCount;
+    }
+
+    /**
+     * Returns the kinetic energy of the last step, the sum of the squared displacements of every node.
+     *
+     * @return Kinetic energy.
+     */
+    public double getKineticEnergy() {
+        return kineticEnergy;
+    }
+
+    /**
+     * Returns the largest node displacement of the last step.
+     *
+     * @return Displacement, in model space units.
+     */
+    public double getMaxDisplacement() {
+        return maxDisplacement;
+    }
+
+    /**
+     * Returns the amount of node pairs whose repulsion was computed exactly, a pair computed for both of its nodes
+     * at once counting once.
+     *
+     * @return Pair count, since the engine was built.
+     */
+    public long getExactPairCount() {
+        return exactPairs.sum();
+    }
+
+    /**
+     * Sets the amount of threads used to compute the forces of big graphs.
+     * A parallelism of 1 keeps the whole simulation in the calling thread.
+     *
+     * @param parallelism Amount of threads.
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1");
+        }
+        if (forkJoinPool != null) {
+            forkJoinPool.shutdown();
+            forkJoinPool = null;
+        }
+        this.parallelism = parallelism;
+        if (parallelism > 1) {
+            forkJoinPool = new ForkJoinPool(parallelism);
+        }
+    }
+
+    /**
+     * Returns the graph being laid out.
+     *
+     * @return Graph, or null if none was set.
+     */
+    public Graph<V, E> getGraph() {
+        return graph;
+    }
+
+    /**
+     * Returns the amount of nodes being laid out.
+     *
+     * @return Node count.
+     */
+    public int vertexCount() {
+        return numVertices;
+    }
+
+    /**
+     * Returns the ordinal of a vertex, which indexes its coordinates.
+     *
+     * @param vertex Vertex.
+     * @return Vertex ordinal.
+     */
+    public int indexOf(Vertex<V> vertex) {
+        Integer index = vertexIndices.get(vertex);
+        if (index == null) {
+            throw new IllegalArgumentException("Vertex not contained within graph");
+        }
+        return index;
+    }
+
+    /**
+     * Returns the vertex with a given ordinal.
+     *
+     * @param index Vertex ordinal.
+     * @return Vertex.
+     */
+    public Vertex<V> vertexAt(int index) {
+        return indexedVertices.get(index);
+    }
+
+    /**
+     * Returns the X coordinate of a node.
+     *
+     * @param index Node ordinal.
+     * @return X coordinate.
+     */
+    public double getX(int index) {
+        return nodeX[index];
+    }
+
+    /**
+     * Returns the Y coordinate of a node.
+     *
+     * @param index Node ordinal.
+     * @return Y coordinate.
+     */
+    public double getY(int index) {
+        return nodeY[index];
+    }
+
+    /**
+     * Changes a node location.
+     *
+     * @param vertex Vertex of the node.
+     * @param x      New X coordinate.
+     * @param y      New Y coordinate.
+     */
+    public void setLocation(Vertex<V> vertex, double x, double y) {
+        int index = indexOf(vertex);
+        nodeX[index] = x;
+        nodeY[index] = y;
+        frozen = null;
+        disturb();
+    }
+
+    /**
+     * Copies the coordinates of every node, interleaved by vertex ordinal (x0, y0, x1, y1, ...).
+     *
+     * @return Node coordinates.
+     */
+    public double[] getCoordinates() {
+        double[] coordinates = new double[numVertices * 2];
+        for (int i = 0; i < numVertices; i++) {
+            coordinates[2 * i] = nodeX[i];
+            coordinates[2 * i + 1] = nodeY[i];
+        }
+        return coordinates;
+    }
+
+    /**
+     * Copies the coordinates of every node into the given arrays, which must hold at least one entry per node.
+     *
+     * @param x Destination of the X coordinates.
+     * @param y Destination of the Y coordinates.
+     */
+    public void copyCoordinates(double[] x, double[] y) {
+        System.arraycopy(nodeX, 0, x, 0, numVertices);
+        System.arraycopy(nodeY, 0, y, 0, numVertices);
+    }
+
+    /**
+     * Replaces the coordinates of every node.
+     *
+     * @param x X coordinates, indexed by vertex ordinal.
+     * @param y Y coordinates, indexed by vertex ordinal.
+     */
+    public void setCoordinates(double[] x, double[] y) {
+        if (x.length != numVertices || y.length != numVertices) {
+            throw new IllegalArgumentException("Expected " + numVertices + " coordinates");
+        }
+        System.arraycopy(x, 0, nodeX, 0, numVertices);
+        System.arraycopy(y, 0, nodeY, 0, numVertices);
+        resetConvergence();
+    }
+
+    /**
+     * Returns the offsets of the neighbours of each node within {@link #adjacency()}.
+     *
+     * @return Adjacency offsets, one per node plus the adjacency length.
+     */
+    int[] adjacencyStart() {
+        return adjacencyStart;
+    }
+
+    /**
+     * Returns the distinct neighbours of every node, grouped by node.
+     *
+     * @return Concatenated neighbour ordinals.
+     */
+    int[] adjacency() {
+        return adjacency;
+    }
+
+    /**
+     * Replaces the coordinates of every node, eg. with a layout computed elsewhere.
+     *
+     * @param coordinates Node coordinates, interleaved by vertex ordinal (x0, y0, x1, y1, ...).
+     */
+    public void setCoordinates(double[] coordinates) {
+        if (coordinates.length != numVertices * 2) {
+            throw new IllegalArgumentException("Expected " + numVertices * 2 + " coordinates");
+        }
+        for (int i = 0; i < numVertices; i++) {
+            nodeX[i] = coordinates[2 * i];
+            nodeY[i] = coordinates[2 * i + 1];
+        }
+        resetConvergence();
+    }
+
+    /**
+     * Scratch space of the component force computation, one per thread.
+     */
+    private static class ComponentScratch {
+        private double[] x = new double[0];          // coordinates of the nodes of a component
+        private double[] y = new double[0];
+        private double[] forceX = new double[0];     // forces of the nodes of a component
+        private double[] forceY = new double[0];
+        private double[] pairX = new double[0];
+        private double[] pairY = new double[0];
+        private final QuadTree quadTree = new QuadTree();
+        private final CellGrid cellGrid = new CellGrid();
+        private final MultipoleTree multipoleTree = new MultipoleTree();
+        private final int[] stack = new int[QuadTree.STACK_SIZE];
+
+        void ensureCapacity(int size) {
+            if (x.length < size) {
+                x = new double[size];
+                y = new double[size];
+                forceX = new double[size];
+                forceY = new double[size];
+                pairX = new double[size];
+                pairY = new double[size];
+            }
+        }
+    }
+
+    /**
+     * Splits a range of components in halves until they hold few enough nodes to have their forces computed at once.
+     */
+    private class ComponentTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final int chunk;
+
+        ComponentTask(int from, int to, int chunk) {
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1 || componentStart[to] - componentStart[from] <= chunk) {
+                computeComponentForces(from, to);
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ComponentTask(from, middle, chunk), new ComponentTask(middle, to, chunk));
+            }
+        }
+    }
+
+    /**
+     * Splits a range of nodes in halves until they are small enough to have their attraction computed at once.
+     */
+    private class AttractionTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final int chunk;
+
+        AttractionTask(int from, int to, int chunk) {
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= chunk) {
+                computeAttractiveForces(from, to);
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new AttractionTask(from, middle, chunk), new AttractionTask(middle, to, chunk));
+            }
+        }
+    }
+
+    /**
+     * Splits a range of nodes in halves until they are small enough to have their forces computed at once.
+     */
+    private class ForceTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final int chunk;
+
+        ForceTask(int from, int to, int chunk) {
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= chunk) {
+                computeForces(from, to, forceStack.get());
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ForceTask(from, middle, chunk), new ForceTask(middle, to, chunk));
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package widget;
+
+/**
+ * Node coordinates of a completed simulation step, indexed by vertex ordinal.
+ * Snapshots are filled by the {@link LayoutWorker} and handed over to the renderer, which only reads them.
+ * Once the renderer is done with a snapshot it gives it back to the worker, who reuses its buffers.
+ * A snapshot is fresh from the moment it is filled until the renderer gives it back, which tells new steps apart
+ * from snapshots already drawn.
+ */
+public final class LayoutSnapshot {
+    private final double[] nodeX;
+    private final double[] nodeY;
+    private long step = 0;
+    private long convergedStep = -1;
+    private long commandCount = 0;
+    private boolean fresh = false;                 //filled and not given back yet, published through the worker
+
+    LayoutSnapshot(int size) {
+        nodeX = new double[size];
+        nodeY = new double[size];
+    }
+
+    /**
+     * Copies the current coordinates and progress of an engine into this snapshot.
+     *
+     * @param engine   Engine to copy from.
+     * @param commands Amount of commands applied to the engine so far.
+     */
+    void capture(LayoutEngine<?, ?> engine, long commands) {
+        engine.copyCoordinates(nodeX, nodeY);
+        step = engine.getStepCount();
+        convergedStep = engine.getConvergedStep();
+        commandCount = commands;
+        fresh = true;
+    }
+
+    /**
+     * Tests whether the snapshot was filled since the renderer last gave it back.
+     *
+     * @return true if the snapshot holds a step not drawn yet.
+     */
+    boolean isFresh() {
+        return fresh;
+    }
+
+    /**
+     * Marks the snapshot as drawn, before the renderer gives it back.
+     */
+    void markTaken() {
+        fresh = false;
+    }
+
+    /**
+     * Returns the amount of nodes in the snapshot.
+     *
+     * @return Node count.
+     */
+    public int size() {
+        return nodeX.length;
+    }
+
+    /**
+     * Returns the simulation step the snapshot was taken at.
+     *
+     * @return Step number.
+     */
+    public long getStep() {
+        return step;
+    }
+
+    /**
+     * Tests whether the layout had settled when the snapshot was taken.
+     *
+     * @return Convergence state.
+     */
+    public boolean isConverged() {
+        return convergedStep >= 0;
+    }
+
+    /**
+     * Returns the step at which the layout had settled when the snapshot was taken.
+     *
+     * @return Step number, or -1 if the layout had not settled.
+     */
+    public long getConvergedStep() {
+        return convergedStep;
+    }
+
+    /**
+     * Returns the amount of commands the simulation thread had applied to the engine when the snapshot was taken.
+     *
+     * @return Command count.
+     */
+    public long getCommandCount() {
+        return commandCount;
+    }
+
+    /**
+     * Returns the X coordinate of a node.
+     *
+     * @param index Node ordinal.
+     * @return X coordinate.
+     */
+    public double getX(int index) {
+        return nodeX[index];
+    }
+
+    /**
+     * Returns the Y coordinate of a node.
+     *
+     * @param index Node ordinal.
+     * @return Y coordinate.
+     */
+    public double getY(int index) {
+        return nodeY[index];
+    }
+
+    /**
+     * Computes a box around the snapshot that contains all of its nodes.
+     *
+     * @return xMin, yMin, xMax, yMax (upper left and lower right corners of the box).
+     */
+    public double[] getBoundaries() {
+        return LayoutEngine.getBoundaries(nodeX, nodeY, nodeX.length);
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package widget;
+
+import tads.Graph.Vertex;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Runs a layout simulation on a dedicated thread.
+ * While the worker runs it is the only one touching the engine. Other threads talk to it by queueing commands,
+ * which are executed between steps, and read its progress through {@link LayoutSnapshot}s.
+ * Snapshots are exchanged without locks through a single slot: after every step the worker swaps the snapshot it
+ * filled for whatever the slot holds, and whenever the renderer draws a frame it swaps the snapshot it drew for the
+ * newest one, if the slot holds one it did not take yet. Only three snapshot buffers ever exist, the one being
+ * filled, the one in the slot and the one being drawn.
+ * Once the layout converges the thread parks until a command arrives.
+ *
+ * @param <V> Node data type
+ * @param <E> Edge data type
+ */
+public final class LayoutWorker<V, E> implements Runnable {
+
+    private final LayoutEngine<V, E> engine;
+    private final Queue<Consumer<LayoutEngine<V, E>>> commands = new ConcurrentLinkedQueue<>();
+    private final AtomicReference<LayoutSnapshot> exchange;   //newest step if not taken yet, else the last drawn
+    private LayoutSnapshot back;                   //buffer being filled, only touched by the worker
+
+    private long submitted = 0;                    //commands queued so far, only touched by the renderer
+    private long applied = 0;                      //commands run so far, only touched by the worker
+
+    private volatile boolean running = false;
+    private Thread thread = null;
+
+    private Vertex<V> pinnedVertex = null;        //node excluded from the simulation (eg. being dragged)
+
+    /**
+     * Builds a worker for an engine, which must not be used by anyone else while the worker runs.
+     *
+     * @param engine Engine to simulate.
+     */
+    public LayoutWorker(LayoutEngine<V, E> engine) {
+        this.engine = engine;
+        exchange = new AtomicReference<>(new LayoutSnapshot(engine.vertexCount()));
+        back = new LayoutSnapshot(engine.vertexCount());
+    }
+
+    /**
+     * Starts simulating on a new thread.
+     */
+    public void start() {
+        running = true;
+        thread = new Thread(this, "GraphDrawer layout");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the simulation, waiting for the current step to complete.
+     * Pending commands are executed before returning, after which the engine can be used by the caller again.
+     */
+    public void stop() {
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        runCommands();
+    }
+
+    /**
+     * Queues an action to be executed over the engine between two steps.
+     *
+     * @param command Action.
+     */
+    public void submit(Consumer<LayoutEngine<V, E>> command) {
+        submitted++;
+        commands.add(command);
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Returns the amount of commands queued so far. A snapshot whose command count reaches it shows what all of
+     * them did.
+     *
+     * @return Command count.
+     */
+    public long submittedCount() {
+        return submitted;
+    }
+
+    /**
+     * Excludes a node from the simulation, leaving it where it is placed.
+     *
+     * @param vertex Vertex of the node, or null to release the previous one.
+     */
+    public void pin(Vertex<V> vertex) {
+        submit(ignored -> pinnedVertex = vertex);
+    }
+
+    /**
+     * Takes the newest completed step, if there is one that was not taken yet, giving back the snapshot drawn so
+     * far for the worker to fill again. The caller owns the snapshot returned until it gives it back this way.
+     *
+     * @param drawn Snapshot returned by the previous call, or null if the caller has none.
+     * @return Newest snapshot, or null if nothing new was simulated, in which case the caller keeps its own.
+     */
+    public LayoutSnapshot poll(LayoutSnapshot drawn) {
+        LayoutSnapshot newest = exchange.get();
+        if (newest == null || !newest.isFresh()) {
+            return null;
+        }
+        if (drawn != null) {
+            drawn.markTaken();
+        }
+        // The worker may only have swapped in a newer step meanwhile, never taken the fresh one back
+        return exchange.getAndSet(drawn);
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            boolean changed = runCommands();
+            if (engine.isConverged()) {
+                if (changed) {
+                    // Commands may have moved nodes without waking the simulation, which must still be drawn
+                    publish();
+                }
+                if (commands.isEmpty()) {
+                    LockSupport.park(this);
+                }
+                continue;
+            }
+            engine.simulateSingleStep(pinnedVertex);
+            publish();
+        }
+    }
+
+    /**
+     * Runs the queued commands.
+     *
+     * @return true if there was any.
+     */
+    private boolean runCommands() {
+        boolean any = false;
+        Consumer<LayoutEngine<V, E>> command;
+        while ((command = commands.poll()) != null) {
+            command.accept(engine);
+            applied++;
+            any = true;
+        }
+        return any;
+    }
+
+    /**
+     * Copies the engine coordinates into the back buffer and swaps it in as the newest snapshot, taking back
+     * either the snapshot the renderer last gave back or a previous step it never took.
+     */
+    private void publish() {
+        if (back == null || back.size() != engine.vertexCount()) {
+            back = new LayoutSnapshot(engine.vertexCount());
+        }
+        back.capture(engine, applied);
+        back = exchange.getAndSet(back);
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package widget;
+
+/**
+ * Decides how much detail is drawn at a given zoom, measured as the length an average edge is drawn with, in
+ * pixels. As the graph is zoomed out labels go first, then edges become thin solid lines with parallel ones
+ * merged, and finally unselected nodes become single pixels.
+ */
+public final class LevelOfDetail {
+
+    private double labelThreshold = 40;            //below it labels are not drawn
+    private double edgeDetailThreshold = 15;       //below it edges are thin solid lines, parallel ones merged
+    private double nodeDetailThreshold = 4;        //below it unselected nodes are single pixels
+
+    /**
+     * Sets the edge length below which labels are no longer drawn.
+     *
+     * @param pixels Edge length, in pixels.
+     */
+    public void setLabelThreshold(double pixels) {
+        labelThreshold = checkThreshold(pixels);
+    }
+
+    /**
+     * Sets the edge length below which edges are drawn as thin solid lines, parallel ones merged into one.
+     *
+     * @param pixels Edge length, in pixels.
+     */
+    public void setEdgeDetailThreshold(double pixels) {
+        edgeDetailThreshold = checkThreshold(pixels);
+    }
+
+    /**
+     * Sets the edge length below which unselected nodes are drawn as single pixels.
+     *
+     * @param pixels Edge length, in pixels.
+     */
+    public void setNodeDetailThreshold(double pixels) {
+        nodeDetailThreshold = checkThreshold(pixels);
+    }
+
+    private static double checkThreshold(double pixels) {
+        if (pixels < 0) {
+            throw new IllegalArgumentException("Threshold can't be negative");
+        }
+        return pixels;
+    }
+
+    /**
+     * Tests whether labels are drawn.
+     *
+     * @param pixels Length an average edge is drawn with.
+     * @return true if labels are drawn.
+     */
+    public boolean drawsLabels(double pixels) {
+        return pixels >= labelThreshold;
+    }
+
+    /**
+     * Tests whether edges are drawn in full, with their styles and parallel edges apart.
+     *
+     * @param pixels Length an average edge is drawn with.
+     * @return true if edges are drawn in full.
+     */
+    public boolean drawsEdgeDetail(double pixels) {
+        return pixels >= edgeDetailThreshold;
+    }
+
+    /**
+     * Tests whether unselected nodes are reduced to single pixels.
+     *
+     * @param pixels Length an average edge is drawn with.
+     * @return true if unselected nodes are single pixels.
+     */
+    public boolean drawsDots(double pixels) {
+        return pixels < nodeDetailThreshold;
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package widget;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Multilevel force directed layout, in the style of Walshaw's and FM³ algorithms.
+ * The graph is repeatedly coarsened by merging pairs of adjacent nodes, until it is small enough to be quickly
+ * laid out from random positions. Each finer level then starts from the layout of the level above it, with every
+ * node placed next to the node it was merged into, and only needs a few steps to be refined.
+ * This untangles big graphs in a fraction of the steps a flat simulation would need.
+ */
+public class MultilevelLayout implements GraphLayout {
+
+    private static final int COARSEST_SIZE = 50;           //levels stop being coarsened under this amount of nodes
+    private static final double MIN_REDUCTION = 0.75;      //levels stop being coarsened if they shrink less than this
+    private static final double JITTER = 0.25;             //distance between split nodes, relative to the edge length
+
+    private int coarsestSteps = 500;                       //steps used to lay out the coarsest level
+    private int refinementSteps = 50;                      //steps used to refine each finer level
+    private RepulsionMode repulsionMode = RepulsionMode.BARNES_HUT;
+    private int parallelism = 1;
+    private int[] levelSizes = new int[0];                 //node count of every level of the last hierarchy built
+
+    @Override
+    public void apply(LayoutEngine<?, ?> engine) {
+        List<Level> levels = new ArrayList<>();
+        Level level = new Level(engine.adjacencyStart(), engine.adjacency());
+        levels.add(level);
+        while (level.size() > COARSEST_SIZE) {
+            Level coarser = level.coarsen();
+            if (coarser.size() > MIN_REDUCTION * level.size()) {
+                break;
+            }
+            levels.add(coarser);
+            level = coarser;
+        }
+        levelSizes = new int[levels.size()];
+        for (int i = 0; i < levels.size(); i++) {
+            levelSizes[i] = levels.get(i).size();
+        }
+
+        // Every level, including the finest one, is simulated on its own engine to keep the settings of the given one
+        Random random = engine.random();
+        LayoutEngine<?, ?> levelEngine = new LayoutEngine<>(level.adjacencyStart, level.adjacency, random);
+        simulate(levelEngine, coarsestSteps);
+        for (int i = levels.size() - 2; i >= 0; i--) {
+            Level finer = levels.get(i);
+            double[] x = new double[finer.size()];
+            double[] y = new double[finer.size()];
+            interpolate(levelEngine, finer, x, y);
+            levelEngine = new LayoutEngine<>(finer.adjacencyStart, finer.adjacency, random);
+            levelEngine.setCoordinates(x, y);
+            simulate(levelEngine, refinementSteps(i, levels.size() - 1));
+        }
+        double[] x = new double[engine.vertexCount()];
+        double[] y = new double[engine.vertexCount()];
+        levelEngine.copyCoordinates(x, y);
+        engine.setCoordinates(x, y);
+    }
+
+    /**
+     * Places every node of a level next to the node of the coarser level it was merged into.
+     * The coarser layout is stretched, as a level with more nodes needs more room at the same density.
+     * Split nodes are spread by a fraction of the edge length, as nodes placed too close to each other would
+     * repel violently and undo the layout of the coarser level.
+     *
+     * @param coarse Engine holding the layout of the coarser level.
+     * @param finer  Level to place.
+     * @param x      Destination of the X coordinates.
+     * @param y      Destination of the Y coordinates.
+     */
+    private void interpolate(LayoutEngine<?, ?> coarse, Level finer, double[] x, double[] y) {
+        double scale = Math.sqrt((double) finer.size() / coarse.vertexCount());
+        double jitter = JITTER * scale * coarse.averageEdgeLength();
+        for (int i = 0; i < finer.size(); i++) {
+            int parent = finer.parent[i];
+            double angle = coarse.random().nextDouble() * 2 * Math.PI;
+            x[i] = coarse.getX(parent) * scale + Math.cos(angle) * jitter;
+            y[i] = coarse.getY(parent) * scale + Math.sin(angle) * jitter;
+        }
+    }
+
+    /**
+     * Returns the amount of steps used to refine a level. Finer levels already inherit an untangled layout and are the
+     * most expensive to simulate, so the steps taper linearly from the coarser levels down to a fifth at the graph.
+     *
+     * @param level  Index of the level, 0 being the graph itself.
+     * @param levels Index of the coarsest level.
+     * @return Steps for the level.
+     */
+    private int refinementSteps(int level, int levels) {
+        int minimum = refinementSteps / 5;
+        return minimum + (refinementSteps - minimum) * level / Math.max(1, levels - 1);
+    }
+
+    /**
+     * Advances an engine up to a given amount of steps, stopping earlier if it converges.
+     */
+    private void simulate(LayoutEngine<?, ?> engine, int steps) {
+        engine.setCoolingSchedule(CoolingSchedule.ADAPTIVE);
+        engine.setRepulsionMode(repulsionMode);
+        engine.setParallelism(parallelism);
+        for (int i = 0; i < steps && !engine.isConverged(); i++) {
+            engine.simulateSingleStep(null);
+        }
+        engine.setParallelism(1);
+    }
+
+    /**
+     * Returns the amount of nodes of every level built by the last application of this layout.
+     *
+     * @return Level sizes, from the finest level, the graph itself, to the coarsest one.
+     */
+    public int[] getLevelSizes() {
+        return levelSizes.clone();
+    }
+
+    /**
+     * Sets the amount of steps used to lay out the coarsest level and to refine every other level.
+     *
+     * @param coarsestSteps   Steps for the coarsest level.
+     * @param refinementSteps Steps for the finer levels, tapering to a fifth at the graph itself.
+     */
+    public void setSteps(int coarsestSteps, int refinementSteps) {
+        if (coarsestSteps < 0 || refinementSteps < 0) {
+            throw new IllegalArgumentException("Steps can't be negative");
+        }
+        this.coarsestSteps = coarsestSteps;
+        this.refinementSteps = refinementSteps;
+    }
+
+    /**
+     * Selects how the repulsion between nodes is computed at every level.
+     *
+     * @param mode Repulsion mode.
+     */
+    public void setRepulsionMode(RepulsionMode mode) {
+        this.repulsionMode = mode;
+    }
+
+    /**
+     * Sets the amount of threads used to compute the forces of big levels.
+     *
+     * @param parallelism Amount of threads.
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1");
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * A level of the coarsening hierarchy, given by its adjacency and the node each of its nodes gets merged into.
+     */
+    private static final class Level {
+        private final int[] adjacencyStart;
+        private final int[] adjacency;
+        private int[] parent;                      //node of the coarser level, set once the level is coarsened
+        private final int[] weight;                //amount of nodes of the original graph merged into each node
+
+        Level(int[] adjacencyStart, int[] adjacency) {
+            this.adjacencyStart = adjacencyStart;
+            this.adjacency = adjacency;
+            this.weight = new int[size()];
+            Arrays.fill(weight, 1);
+        }
+
+        int size() {
+            return adjacencyStart.length - 1;
+        }
+
+        /**
+         * Builds the next level by matching every node with its unmatched neighbour of lowest weight, which keeps
+         * the merged nodes balanced. Nodes without unmatched neighbours are carried over on their own.
+         *
+         * @return Coarser level.
+         */
+        Level coarsen() {
+            int size = size();
+            parent = new int[size];
+            Arrays.fill(parent, -1);
+            int coarseSize = 0;
+            int[] coarseWeights = new int[size];
+            for (int i = 0; i < size; i++) {
+                if (parent[i] >= 0) {
+                    continue;
+                }
+                int match = -1;
+                for (int k = adjacencyStart[i]; k < adjacencyStart[i + 1]; k++) {
+                    int j = adjacency[k];
+                    if (parent[j] < 0 && (match < 0 || weight[j] < weight[match])) {
+                        match = j;
+                    }
+                }
+                parent[i] = coarseSize;
+                int coarseWeight = weight[i];
+                if (match >= 0) {
+                    parent[match] = coarseSize;
+                    coarseWeight += weight[match];
+                }
+                coarseWeights[coarseSize++] = coarseWeight;
+            }
+
+            // Group the nodes by their coarse node, then merge their neighbourhoods
+            int[] memberStart = new int[coarseSize + 1];
+            for (int i = 0; i < size; i++) {
+                memberStart[parent[i] + 1]++;
+            }
+            for (int c = 0; c < coarseSize; c++) {
+                memberStart[c + 1] += memberStart[c];
+            }
+            int[] members = new int[size];
+            int[] fill = Arrays.copyOf(memberStart, coarseSize);
+            for (int i = 0; i < size; i++) {
+                members[fill[parent[i]]++] = i;
+            }
+            int[] coarseStart = new int[coarseSize + 1];
+            int[] coarseAdjacency = new int[adjacency.length];
+            int[] seen = new int[coarseSize];
+            Arrays.fill(seen, -1);
+            int length = 0;
+            for (int c = 0; c < coarseSize; c++) {
+                seen[c] = c;
+                for (int m = memberStart[c]; m < memberStart[c + 1]; m++) {
+                    int i = members[m];
+                    for (int k = adjacencyStart[i]; k < adjacencyStart[i + 1]; k++) {
+                        int neighbour = parent[adjacency[k]];
+                        if (seen[neighbour] != c) {
+                            seen[neighbour] = c;
+                            coarseAdjacency[length++] = neighbour;
+                        }
+                    }
+                }
+                coarseStart[c + 1] = length;
+            }
+            Level coarser = new Level(coarseStart, Arrays.copyOf(coarseAdjacency, length));
+            System.arraycopy(coarseWeights, 0, coarser.weight, 0, coarseSize);
+            return coarser;
+        }
+    }
+}
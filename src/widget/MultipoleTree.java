@@ -0,0 +1,511 @@
+/*
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package widget;
+
+import java.util.Arrays;
+
+/**
+ * Fast multipole method used to approximate the repulsion between nodes.
+ * The repulsion is the gradient of the potential 1/r, which is not harmonic in the plane, so expansions are
+ * cartesian Taylor series rather than complex ones. Every cell of an adaptive quadtree gets a multipole
+ * expansion of its nodes, up to the configured order. A dual tree walk then pairs cells that are far enough from
+ * each other, translating the multipole expansion of each into a local expansion of the other, and evaluates
+ * every other pair of nearby nodes exactly. Local expansions are finally pushed down the tree to the nodes.
+ * Unlike Barnes-Hut, whole groups of nodes interact with whole groups, so a step costs O(V) once the tree is
+ * built, and the error is bounded by the opening criterion to the power of the order.
+ * Like the other trees, its flat arrays are only grown, never shrunk.
+ */
+public final class MultipoleTree {
+
+    public static final int MAX_ORDER = 12;
+    private static final int LEAF_SIZE = 32;       // nodes above which a cell is split
+    private static final int MAX_DEPTH = 32;       // below this depth coincident nodes share a leaf
+    private static final double OPENING = 0.65;    // largest ratio between cell radii and distance to interact
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int order;
+    private int terms;                             // coefficients per expansion
+    // Translation tables, one entry per pair of coefficients involved
+    private int[] shiftTarget;                     // multipole to multipole, and local to local reversed
+    private int[] shiftSource;
+    private int[] shiftPower;
+    private double[] shiftFactor;
+    private int[] farTarget;                       // multipole to local
+    private int[] farSource;
+    private int[] farDerivative;
+    private double[] farFactor;
+    private int[] powerX;                          // exponents of each coefficient
+    private int[] powerY;
+    private double[] derivatives;                  // scratch space of the translations
+    private double[] mirrored;
+    private double[] powers;
+
+    private int count = 0;
+    private int[] points = new int[0];             // node ordinals, sorted by cell
+    private int[] sorting = new int[0];
+    private double[] pointX = new double[0];       // node coordinates, sorted by cell
+    private double[] pointY = new double[0];
+    private double[] pointForceX = new double[0];
+    private double[] pointForceY = new double[0];
+
+    private int cellCount = 0;
+    private double[] cellX = new double[INITIAL_CAPACITY];      // cell center, which is the expansion center
+    private double[] cellY = new double[INITIAL_CAPACITY];
+    private double[] cellHalfSize = new double[INITIAL_CAPACITY];
+    private int[] cellStart = new int[INITIAL_CAPACITY];        // range of the nodes of a cell within points
+    private int[] cellEnd = new int[INITIAL_CAPACITY];
+    private int[] cellChildren = new int[INITIAL_CAPACITY];     // index of the first child, -1 for leaves
+    private int[] cellChildCount = new int[INITIAL_CAPACITY];   // only non-empty children exist
+    private double[] multipole = new double[0];
+    private double[] local = new double[0];
+
+    /**
+     * Builds a tree with expansions of order 4.
+     */
+    public MultipoleTree() {
+        setOrder(4);
+    }
+
+    /**
+     * Sets the order of the expansions. Higher orders are more accurate, and cost quadratically more per cell.
+     *
+     * @param order Expansion order, from 0 to {@link #MAX_ORDER}.
+     */
+    public void setOrder(int order) {
+        if (order < 0 || order > MAX_ORDER) {
+            throw new IllegalArgumentException("Order must be between 0 and " + MAX_ORDER);
+        }
+        this.order = order;
+        terms = (order + 1) * (order + 2) / 2;
+        powerX = new int[terms];
+        powerY = new int[terms];
+        for (int n = 0; n <= order; n++) {
+            for (int j = 0; j <= n; j++) {
+                powerX[term(n - j, j)] = n - j;
+                powerY[term(n - j, j)] = j;
+            }
+        }
+        buildTables();
+        derivatives = new double[terms];
+        mirrored = new double[terms];
+        powers = new double[terms];
+        multipole = new double[cellX.length * terms];
+        local = new double[cellX.length * terms];
+    }
+
+    /**
+     * Returns the order of the expansions.
+     *
+     * @return Expansion order.
+     */
+    public int getOrder() {
+        return order;
+    }
+
+    /**
+     * Index of the coefficient of x^i·y^j within an expansion, coefficients being sorted by degree.
+     */
+    private static int term(int i, int j) {
+        int n = i + j;
+        return n * (n + 1) / 2 + j;
+    }
+
+    private static double binomial(int n, int k) {
+        double result = 1;
+        for (int i = 1; i <= k; i++) {
+            result = result * (n - k + i) / i;
+        }
+        return result;
+    }
+
+    /**
+     * Lists the coefficient pairs involved in the translations, with the factors they are multiplied by.
+     */
+    private void buildTables() {
+        int shifts = 0;
+        int far = 0;
+        for (int a = 0; a < terms; a++) {
+            for (int b = 0; b < terms; b++) {
+                if (powerX[b] <= powerX[a] && powerY[b] <= powerY[a]) {
+                    shifts++;
+                }
+                if (powerX[a] + powerY[a] + powerX[b] + powerY[b] <= order) {
+                    far++;
+                }
+            }
+        }
+        shiftTarget = new int[shifts];
+        shiftSource = new int[shifts];
+        shiftPower = new int[shifts];
+        shiftFactor = new double[shifts];
+        farTarget = new int[far];
+        farSource = new int[far];
+        farDerivative = new int[far];
+        farFactor = new double[far];
+        shifts = 0;
+        far = 0;
+        for (int a = 0; a < terms; a++) {
+            for (int b = 0; b < terms; b++) {
+                int ax = powerX[a], ay = powerY[a], bx = powerX[b], by = powerY[b];
+                if (bx <= ax && by <= ay) {
+                    // (d + t)^a = sum over b <= a of C(a, b)·d^b·t^(a-b)
+                    shiftTarget[shifts] = a;
+                    shiftSource[shifts] = b;
+                    shiftPower[shifts] = term(ax - bx, ay - by);
+                    shiftFactor[shifts++] = binomial(ax, bx) * binomial(ay, by);
+                }
+                if (ax + ay + bx + by <= order) {
+                    // Local coefficient b gets (-1)^|a|·C(a+b, a)·T(a+b)·M(a), T being the Taylor coefficients of 1/r
+                    farTarget[far] = b;
+                    farSource[far] = a;
+                    farDerivative[far] = term(ax + bx, ay + by);
+                    farFactor[far++] = ((ax + ay) % 2 == 0 ? 1 : -1) * binomial(ax + bx, ax) * binomial(ay + by, ay);
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds the tree over the first {@code count} nodes of the given coordinate arrays, along with the multipole
+     * expansion of every cell. The coordinates are copied.
+     *
+     * @param x     X coordinates of the nodes.
+     * @param y     Y coordinates of the nodes.
+     * @param count Amount of nodes.
+     */
+    public void build(double[] x, double[] y, int count) {
+        this.count = count;
+        if (points.length < count) {
+            points = new int[count];
+            sorting = new int[count];
+            pointX = new double[count];
+            pointY = new double[count];
+            pointForceX = new double[count];
+            pointForceY = new double[count];
+        }
+        cellCount = 0;
+        if (count == 0) {
+            return;
+        }
+        double xMin, xMax, yMin, yMax;
+        xMin = xMax = x[0];
+        yMin = yMax = y[0];
+        for (int i = 0; i < count; i++) {
+            points[i] = i;
+            xMin = Math.min(xMin, x[i]);
+            xMax = Math.max(xMax, x[i]);
+            yMin = Math.min(yMin, y[i]);
+            yMax = Math.max(yMax, y[i]);
+        }
+        double size = Math.max(Math.max(xMax - xMin, yMax - yMin), 1);
+        newCell((xMin + xMax) / 2, (yMin + yMax) / 2, size / 2 * 1.0001, 0, count);
+        // Children are created together, after their parent, so cells can be split in creation order
+        for (int cell = 0, depth = 0, levelEnd = 1; cell < cellCount; cell++) {
+            if (cell == levelEnd) {
+                depth++;
+                levelEnd = cellCount;
+            }
+            if (cellEnd[cell] - cellStart[cell] > LEAF_SIZE && depth < MAX_DEPTH) {
+                subdivide(cell, x, y);
+            }
+        }
+        for (int k = 0; k < count; k++) {
+            pointX[k] = x[points[k]];
+            pointY[k] = y[points[k]];
+        }
+        computeMultipoles();
+    }
+
+    /**
+     * Splits a cell in its non-empty quadrants, sorting its nodes by quadrant.
+     */
+    private void subdivide(int cell, double[] x, double[] y) {
+        int start = cellStart[cell];
+        int end = cellEnd[cell];
+        double centerX = cellX[cell];
+        double centerY = cellY[cell];
+        int[] sizes = new int[4];
+        for (int k = start; k < end; k++) {
+            sizes[quadrant(x[points[k]], y[points[k]], centerX, centerY)]++;
+        }
+        int[] next = new int[4];
+        next[0] = start;
+        for (int q = 1; q < 4; q++) {
+            next[q] = next[q - 1] + sizes[q - 1];
+        }
+        int[] offsets = next.clone();
+        for (int k = start; k < end; k++) {
+            int point = points[k];
+            sorting[next[quadrant(x[point], y[point], centerX, centerY)]++] = point;
+        }
+        System.arraycopy(sorting, start, points, start, end - start);
+        double half = cellHalfSize[cell] / 2;
+        cellChildren[cell] = cellCount;
+        cellChildCount[cell] = 0;
+        for (int q = 0; q < 4; q++) {
+            if (sizes[q] > 0) {
+                // Same order as quadrant(): left-top, right-top, left-bottom, right-bottom
+                newCell(centerX + ((q & 1) == 0 ? -half : half), centerY + ((q & 2) == 0 ? -half : half), half,
+                        offsets[q], offsets[q] + sizes[q]);
+                cellChildCount[cell]++;
+            }
+        }
+    }
+
+    private static int quadrant(double x, double y, double centerX, double centerY) {
+        return (x >= centerX ? 1 : 0) + (y >= centerY ? 2 : 0);
+    }
+
+    /**
+     * Computes the multipole expansion of every cell, directly from the nodes of the leaves and by translating the
+     * expansions of the children for the others. Children are created after their parents, so a reverse sweep
+     * visits them first.
+     */
+    private void computeMultipoles() {
+        Arrays.fill(multipole, 0, cellCount * terms, 0);
+        for (int cell = cellCount - 1; cell >= 0; cell--) {
+            int offset = cell * terms;
+            if (cellChildren[cell] < 0) {
+                for (int k = cellStart[cell]; k < cellEnd[cell]; k++) {
+                    computePowers(pointX[k] - cellX[cell], pointY[k] - cellY[cell]);
+                    for (int t = 0; t < terms; t++) {
+                        multipole[offset + t] += powers[t];
+                    }
+                }
+                continue;
+            }
+            for (int child = cellChildren[cell]; child < cellChildren[cell] + cellChildCount[cell]; child++) {
+                computePowers(cellX[child] - cellX[cell], cellY[child] - cellY[cell]);
+                int childOffset = child * terms;
+                for (int e = 0; e < shiftTarget.length; e++) {
+                    multipole[offset + shiftTarget[e]] +=
+                            shiftFactor[e] * powers[shiftPower[e]] * multipole[childOffset + shiftSource[e]];
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the approximated repelling force that every other node applies to each node into the force arrays,
+     * indexed like the coordinates the tree was built from.
+     *
+     * @param scale  Repulsion scale.
+     * @param forceX Accumulator of the horizontal force components.
+     * @param forceY Accumulator of the vertical force components.
+     */
+    public void accumulateRepulsion(double scale, double[] forceX, double[] forceY) {
+        if (cellCount == 0) {
+            return;
+        }
+        Arrays.fill(local, 0, cellCount * terms, 0);
+        Arrays.fill(pointForceX, 0, count, 0);
+        Arrays.fill(pointForceY, 0, count, 0);
+        interact(0, 0, scale);
+        // Parents come first, so their local expansions are complete before being passed down
+        for (int cell = 0; cell < cellCount; cell++) {
+            int offset = cell * terms;
+            if (cellChildren[cell] >= 0) {
+                for (int child = cellChildren[cell]; child < cellChildren[cell] + cellChildCount[cell]; child++) {
+                    computePowers(cellX[child] - cellX[cell], cellY[child] - cellY[cell]);
+                    int childOffset = child * terms;
+                    for (int e = 0; e < shiftTarget.length; e++) {
+                        local[childOffset + shiftSource[e]] +=
+                                shiftFactor[e] * powers[shiftPower[e]] * local[offset + shiftTarget[e]];
+                    }
+                }
+                continue;
+            }
+            for (int k = cellStart[cell]; k < cellEnd[cell]; k++) {
+                computePowers(pointX[k] - cellX[cell], pointY[k] - cellY[cell]);
+                double gradientX = 0;
+                double gradientY = 0;
+                for (int t = 1; t < terms; t++) {
+                    int i = powerX[t];
+                    int j = powerY[t];
+                    if (i > 0) {
+                        gradientX += local[offset + t] * i * powers[term(i - 1, j)];
+                    }
+                    if (j > 0) {
+                        gradientY += local[offset + t] * j * powers[term(i, j - 1)];
+                    }
+                }
+                // The repelling force is the symmetric of the gradient of the potential
+                pointForceX[k] -= scale * gradientX;
+                pointForceY[k] -= scale * gradientY;
+            }
+        }
+        for (int k = 0; k < count; k++) {
+            forceX[points[k]] += pointForceX[k];
+            forceY[points[k]] += pointForceY[k];
+        }
+    }
+
+    /**
+     * Accounts for the repulsion between the nodes of two cells, or within a single one.
+     * Cells far enough apart exchange expansions, nearby leaves are computed exactly, and any other pair is
+     * resolved by splitting the biggest cell.
+     */
+    private void interact(int a, int b, double scale) {
+        if (a == b) {
+            if (cellChildren[a] < 0) {
+                computeNearField(a, a, scale);
+                return;
+            }
+            int first = cellChildren[a];
+            int last = first + cellChildCount[a];
+            for (int i = first; i < last; i++) {
+                interact(i, i, scale);
+                for (int j = i + 1; j < last; j++) {
+                    interact(i, j, scale);
+                }
+            }
+            return;
+        }
+        double dx = cellX[b] - cellX[a];
+        double dy = cellY[b] - cellY[a];
+        double radii = Math.sqrt(2) * (cellHalfSize[a] + cellHalfSize[b]);
+        if (radii * radii < OPENING * OPENING * (dx * dx + dy * dy)) {
+            computeFarField(a, b, dx, dy);
+            return;
+        }
+        boolean leafA = cellChildren[a] < 0;
+        boolean leafB = cellChildren[b] < 0;
+        if (leafA && leafB) {
+            computeNearField(a, b, scale);
+        } else if (leafB || (!leafA && cellHalfSize[a] >= cellHalfSize[b])) {
+            for (int child = cellChildren[a]; child < cellChildren[a] + cellChildCount[a]; child++) {
+                interact(child, b, scale);
+            }
+        } else {
+            for (int child = cellChildren[b]; child < cellChildren[b] + cellChildCount[b]; child++) {
+                interact(a, child, scale);
+            }
+        }
+    }
+
+    /**
+     * Translates the multipole expansion of each of two cells into the local expansion of the other.
+     *
+     * @param dx Horizontal distance from the first cell center to the second.
+     * @param dy Vertical distance from the first cell center to the second.
+     */
+    private void computeFarField(int a, int b, double dx, double dy) {
+        computeDerivatives(dx, dy);
+        // 1/r is even, so the coefficients seen from the other side only differ in the sign of the odd ones
+        for (int t = 0; t < terms; t++) {
+            mirrored[t] = (powerX[t] + powerY[t]) % 2 == 0 ? derivatives[t] : -derivatives[t];
+        }
+        int offsetA = a * terms;
+        int offsetB = b * terms;
+        for (int e = 0; e < farTarget.length; e++) {
+            double factor = farFactor[e];
+            local[offsetB + farTarget[e]] += factor * derivatives[farDerivative[e]] * multipole[offsetA + farSource[e]];
+            local[offsetA + farTarget[e]] += factor * mirrored[farDerivative[e]] * multipole[offsetB + farSource[e]];
+        }
+    }
+
+    /**
+     * Computes the exact repulsion between the nodes of two leaves, or within a single one, visiting every pair once.
+     */
+    private void computeNearField(int a, int b, double scale) {
+        for (int i = cellStart[a]; i < cellEnd[a]; i++) {
+            double x = pointX[i];
+            double y = pointY[i];
+            double sumX = 0;
+            double sumY = 0;
+            for (int j = a == b ? i + 1 : cellStart[b]; j < cellEnd[b]; j++) {
+                double dx = pointX[j] - x;
+                double dy = pointY[j] - y;
+                double factor = FxMath.repellingFactor(dx * dx + dy * dy, scale);
+                sumX += dx * factor;
+                sumY += dy * factor;
+                pointForceX[j] -= dx * factor;
+                pointForceY[j] -= dy * factor;
+            }
+            pointForceX[i] += sumX;
+            pointForceY[i] += sumY;
+        }
+    }
+
+    /**
+     * Fills the powers x^i·y^j of a displacement, indexed like the expansion coefficients.
+     */
+    private void computePowers(double x, double y) {
+        powers[0] = 1;
+        for (int t = 1; t < terms; t++) {
+            int i = powerX[t];
+            int j = powerY[t];
+            powers[t] = j > 0 ? powers[term(i, j - 1)] * y : powers[term(i - 1, j)] * x;
+        }
+    }
+
+    /**
+     * Fills the Taylor coefficients of 1/r around a displacement, that is, its partial derivatives divided by the
+     * factorials of their orders. Writing r² = a + 2·R·y + y², with a = |R|², the power rule gives a recurrence
+     * that only involves the two previous degrees.
+     */
+    private void computeDerivatives(double x, double y) {
+        double squared = x * x + y * y;
+        derivatives[0] = 1 / Math.sqrt(squared);
+        for (int t = 1; t < terms; t++) {
+            int i = powerX[t];
+            int j = powerY[t];
+            int n = i + j;
+            double sum = 0;
+            if (i > 0) {
+                sum += (1 - 2 * n) * x * derivatives[term(i - 1, j)];
+            }
+            if (j > 0) {
+                sum += (1 - 2 * n) * y * derivatives[term(i, j - 1)];
+            }
+            if (i > 1) {
+                sum += (1 - n) * derivatives[term(i - 2, j)];
+            }
+            if (j > 1) {
+                sum += (1 - n) * derivatives[term(i, j - 2)];
+            }
+            derivatives[t] = sum / (squared * n);
+        }
+    }
+
+    private int newCell(double x, double y, double halfSize, int start, int end) {
+        if (cellCount == cellX.length) {
+            grow();
+        }
+        int cell = cellCount++;
+        cellX[cell] = x;
+        cellY[cell] = y;
+        cellHalfSize[cell] = halfSize;
+        cellStart[cell] = start;
+        cellEnd[cell] = end;
+        cellChildren[cell] = -1;
+        cellChildCount[cell] = 0;
+        return cell;
+    }
+
+    private void grow() {
+        int capacity = cellX.length * 2;
+        cellX = Arrays.copyOf(cellX, capacity);
+        cellY = Arrays.copyOf(cellY, capacity);
+        cellHalfSize = Arrays.copyOf(cellHalfSize, capacity);
+        cellStart = Arrays.copyOf(cellStart, capacity);
+        cellEnd = Arrays.copyOf(cellEnd, capacity);
+        cellChildren = Arrays.copyOf(cellChildren, capacity);
+        cellChildCount = Arrays.copyOf(cellChildCount, capacity);
+        multipole = Arrays.copyOf(multipole, capacity * terms);
+        local = Arrays.copyOf(local, capacity * terms);
+    }
+}
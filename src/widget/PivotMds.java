@@ -0,0 +1,217 @@
+/*
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package widget;
+
+import java.util.Random;
+
+/**
+ * Pivot multidimensional scaling, after Brandes and Pich.
+ * Graph distances are measured from k pivots only, giving a V×k matrix which is double centered, as classical MDS
+ * would do with the full V×V one. The two dominant eigenvectors of its k×k Gram matrix, found by power iteration,
+ * project the nodes onto the plane. It takes O(k·(V+E)) time and O(V·k) memory, and gives a layout that is right
+ * at a global scale, although nodes close in the graph may overlap. That makes it a good starting point for a force
+ * or stress layout, which only needs to fix the details.
+ */
+public class PivotMds implements GraphLayout {
+
+    private static final int MAX_POWER_ITERATIONS = 200;
+    private static final double POWER_TOLERANCE = 1e-9;
+    private static final double JITTER = 0.05;      //random offset of every node, relative to the edge length
+
+    private int pivotCount = 50;
+    private double edgeLength = 100;               //average length of an edge in the result, model space units
+
+    @Override
+    public void apply(LayoutEngine<?, ?> engine) {
+        int size = engine.vertexCount();
+        if (size < 2) {
+            return;
+        }
+        int[] adjacencyStart = engine.adjacencyStart();
+        int[] adjacency = engine.adjacency();
+        int count = Math.min(pivotCount, size);
+        int[][] distances = GraphDistances.maxMinPivots(adjacencyStart, adjacency, new int[count]);
+        double[][] centered = doubleCenter(distances);
+
+        // Gram matrix of the pivot columns, whose eigenvectors are the right singular vectors of the centered matrix
+        double[][] gram = new double[count][count];
+        for (int p = 0; p < count; p++) {
+            for (int q = p; q < count; q++) {
+                double sum = 0;
+                for (int i = 0; i < size; i++) {
+                    sum += centered[p][i] * centered[q][i];
+                }
+                gram[p][q] = gram[q][p] = sum;
+            }
+        }
+        double[] first = dominantEigenvector(gram, null);
+        double[] second = dominantEigenvector(gram, first);
+
+        double[] x = new double[size];
+        double[] y = new double[size];
+        for (int p = 0; p < count; p++) {
+            for (int i = 0; i < size; i++) {
+                x[i] += centered[p][i] * first[p];
+                y[i] += centered[p][i] * second[p];
+            }
+        }
+        engine.setCoordinates(x, y);
+        double scale = edgeLength / engine.averageEdgeLength();
+        if (adjacency.length == 0 || !(scale > 0) || Double.isInfinite(scale)) {
+            scale = 1;
+        }
+        // Nodes at the same distance from every pivot (eg. the leaves of a star) land on the same spot
+        Random random = engine.random();
+        for (int i = 0; i < size; i++) {
+            double angle = random.nextDouble() * 2 * Math.PI;
+            x[i] = x[i] * scale + Math.cos(angle) * JITTER * edgeLength;
+            y[i] = y[i] * scale + Math.sin(angle) * JITTER * edgeLength;
+        }
+        engine.setCoordinates(x, y);
+    }
+
+    /**
+     * Turns the pivot distances into the double centered matrix of their squares, -½·(d² - row mean - column mean
+     * + mean). Nodes unreachable from a pivot are taken to be one edge farther than the farthest reachable one.
+     *
+     * @param distances Distances, one row per pivot.
+     * @return Centered matrix, one row per pivot.
+     */
+    private static double[][] doubleCenter(int[][] distances) {
+        int count = distances.length;
+        int size = distances[0].length;
+        int diameter = 0;
+        for (int[] row : distances) {
+            for (int distance : row) {
+                diameter = Math.max(diameter, distance);
+            }
+        }
+        double[][] centered = new double[count][size];
+        double[] pivotMeans = new double[count];
+        double[] nodeMeans = new double[size];
+        double mean = 0;
+        for (int p = 0; p < count; p++) {
+            for (int i = 0; i < size; i++) {
+                int distance = distances[p][i] == GraphDistances.UNREACHABLE ? diameter + 1 : distances[p][i];
+                double squared = (double) distance * distance;
+                centered[p][i] = squared;
+                pivotMeans[p] += squared / size;
+                nodeMeans[i] += squared / count;
+                mean += squared / ((double) size * count);
+            }
+        }
+        for (int p = 0; p < count; p++) {
+            for (int i = 0; i < size; i++) {
+                centered[p][i] = -0.5 * (centered[p][i] - pivotMeans[p] - nodeMeans[i] + mean);
+            }
+        }
+        return centered;
+    }
+
+    /**
+     * Finds the eigenvector of a symmetric positive semidefinite matrix with the largest eigenvalue by power
+     * iteration, optionally ignoring the direction of a previously found one.
+     *
+     * @param matrix   Symmetric matrix.
+     * @param excluded Unit eigenvector to project out of every iterate, or null.
+     * @return Unit eigenvector.
+     */
+    private static double[] dominantEigenvector(double[][] matrix, double[] excluded) {
+        int size = matrix.length;
+        double[] vector = new double[size];
+        double[] next = new double[size];
+        for (int i = 0; i < size; i++) {
+            vector[i] = 1 + (i % 3) - 0.5 * (i % 2);   // deterministic start, unlikely to be orthogonal to the answer
+        }
+        orthonormalize(vector, excluded);
+        for (int iteration = 0; iteration < MAX_POWER_ITERATIONS; iteration++) {
+            for (int i = 0; i < size; i++) {
+                double sum = 0;
+                for (int j = 0; j < size; j++) {
+                    sum += matrix[i][j] * vector[j];
+                }
+                next[i] = sum;
+            }
+            if (!orthonormalize(next, excluded)) {
+                break;
+            }
+            double change = 0;
+            for (int i = 0; i < size; i++) {
+                change += (next[i] - vector[i]) * (next[i] - vector[i]);
+            }
+            double[] swap = vector;
+            vector = next;
+            next = swap;
+            if (change < POWER_TOLERANCE) {
+                break;
+            }
+        }
+        return vector;
+    }
+
+    /**
+     * Removes the component of a vector along another and scales it to unit length.
+     *
+     * @return false if nothing was left of the vector, in which case it is left untouched.
+     */
+    private static boolean orthonormalize(double[] vector, double[] excluded) {
+        if (excluded != null) {
+            double dot = 0;
+            for (int i = 0; i < vector.length; i++) {
+                dot += vector[i] * excluded[i];
+            }
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] -= dot * excluded[i];
+            }
+        }
+        double norm = 0;
+        for (double value : vector) {
+            norm += value * value;
+        }
+        norm = Math.sqrt(norm);
+        if (!(norm > 1e-12)) {
+            return false;
+        }
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] /= norm;
+        }
+        return true;
+    }
+
+    /**
+     * Sets the amount of pivots distances are measured from. More pivots give a more faithful layout.
+     *
+     * @param pivots Amount of pivots, at least 2.
+     */
+    public void setPivots(int pivots) {
+        if (pivots < 2) {
+            throw new IllegalArgumentException("At least two pivots are needed");
+        }
+        this.pivotCount = pivots;
+    }
+
+    /**
+     * Sets the average distance between adjacent nodes in the result.
+     *
+     * @param edgeLength Edge length, in model space units.
+     */
+    public void setEdgeLength(double edgeLength) {
+        if (!(edgeLength > 0)) {
+            throw new IllegalArgumentException("Edge length must be positive");
+        }
+        this.edgeLength = edgeLength;
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package widget;
+
+import java.util.Arrays;
+
+/**
+ * Barnes-Hut quadtree used to approximate the repulsion between nodes.
+ * The tree is rebuilt from scratch every simulation step. Its cells are kept in flat arrays which are
+ * only grown, never shrunk, so that rebuilding it does not allocate once it reached its working size.
+ * Each cell stores the amount of nodes it contains (its mass) and their center of mass, which is used as
+ * a single repelling body whenever the cell is far enough from the node being evaluated.
+ */
+public final class QuadTree {
+
+    // Below this depth leaves hold a single node. Coincident nodes get chained at the deepest level.
+    private static final int MAX_DEPTH = 32;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private double[] pointX;                        // node coordinates, owned by the caller
+    private double[] pointY;
+    private int[] nextPoint = new int[0];           // chains the nodes that share a leaf
+
+    private int cellCount = 0;
+    private double[] cellX = new double[INITIAL_CAPACITY];      // cell center
+    private double[] cellY = new double[INITIAL_CAPACITY];
+    private double[] cellHalfSize = new double[INITIAL_CAPACITY];
+    private double[] cellMass = new double[INITIAL_CAPACITY];
+    private double[] cellMassX = new double[INITIAL_CAPACITY];  // center of mass
+    private double[] cellMassY = new double[INITIAL_CAPACITY];
+    private int[] cellChildren = new int[INITIAL_CAPACITY];     // index of the first of four children, -1 for leaves
+    private int[] cellPoints = new int[INITIAL_CAPACITY];       // first node of a leaf, -1 if empty
+
+    // Size of the traversal stacks used by accumulateRepulsion
+    static final int STACK_SIZE = 4 * (MAX_DEPTH + 1);
+
+    private final int[] stack = new int[STACK_SIZE];
+
+    /**
+     * Builds the tree over the first {@code count} nodes of the given coordinate arrays.
+     * The arrays are referenced, not copied, and must not change until the tree is rebuilt.
+     *
+     * @param x     X coordinates of the nodes.
+     * @param y     Y coordinates of the nodes.
+     * @param count Amount of nodes.
+     */
+    public void build(double[] x, double[] y, int count) {
+        pointX = x;
+        pointY = y;
+        if (nextPoint.length < count) {
+            nextPoint = new int[count];
+        }
+        cellCount = 0;
+        if (count == 0) {
+            return;
+        }
+        double xMin, xMax, yMin, yMax;
+        xMin = xMax = x[0];
+        yMin = yMax = y[0];
+        for (int i = 1; i < count; i++) {
+            xMin = Math.min(xMin, x[i]);
+            xMax = Math.max(xMax, x[i]);
+            yMin = Math.min(yMin, y[i]);
+            yMax = Math.max(yMax, y[i]);
+        }
+        double size = Math.max(Math.max(xMax - xMin, yMax - yMin), 1);
+        newCell((xMin + xMax) / 2, (yMin + yMax) / 2, size / 2 * 1.0001);
+        for (int i = 0; i < count; i++) {
+            insert(i);
+        }
+        computeMasses();
+    }
+
+    /**
+     * Adds the approximated repelling force that every other node applies to the node at {@code index}
+     * into the force arrays. Cells that look smaller than {@code theta} from the node are treated as a
+     * single body. A theta of 0 degenerates into the exact computation.
+     *
+     * @param index  Node being evaluated.
+     * @param theta  Opening angle, ratio between the cell size and its distance to the node.
+     * @param scale  Repulsion scale.
+     * @param forceX Accumulator of the horizontal force components.
+     * @param forceY Accumulator of the vertical force components.
+     */
+    public void accumulateRepulsion(int index, double theta, double scale, double[] forceX, double[] forceY) {
+        accumulateRepulsion(index, theta, scale, forceX, forceY, stack);
+    }
+
+    /**
+     * Same as {@link #accumulateRepulsion(int, double, double, double[], double[])}, but traversing the tree with
+     * a caller owned stack of at least {@link #STACK_SIZE} elements, so that several threads can query the tree
+     * at once.
+     */
+    void accumulateRepulsion(int index, double theta, double scale, double[] forceX, double[] forceY, int[] stack) {
+        if (cellCount == 0) {
+            return;
+        }
+        double x = pointX[index];
+        double y = pointY[index];
+        double sumX = 0;
+        double sumY = 0;
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int cell = stack[--top];
+            if (cellMass[cell] == 0) {
+                continue;
+            }
+            if (cellChildren[cell] < 0) {
+                for (int point = cellPoints[cell]; point >= 0; point = nextPoint[point]) {
+                    if (point == index) {
+                        continue;
+                    }
+                    double dx = pointX[point] - x;
+                    double dy = pointY[point] - y;
+                    double factor = FxMath.repellingFactor(dx * dx + dy * dy, scale);
+                    sumX += dx * factor;
+                    sumY += dy * factor;
+                }
+                continue;
+            }
+            double dx = cellMassX[cell] - x;
+            double dy = cellMassY[cell] - y;
+            double squaredDistance = dx * dx + dy * dy;
+            if (2 * cellHalfSize[cell] < theta * Math.sqrt(squaredDistance) && !contains(cell, x, y)) {
+                double factor = cellMass[cell] * FxMath.repellingFactor(squaredDistance, scale);
+                sumX += dx * factor;
+                sumY += dy * factor;
+            } else {
+                int child = cellChildren[cell];
+                stack[top++] = child;
+                stack[top++] = child + 1;
+                stack[top++] = child + 2;
+                stack[top++] = child + 3;
+            }
+        }
+        forceX[index] += sumX;
+        forceY[index] += sumY;
+    }
+
+    /**
+     * Descends the tree until an empty leaf is found for a node, splitting occupied leaves on the way.
+     *
+     * @param point Node index.
+     */
+    private void insert(int point) {
+        double x = pointX[point];
+        double y = pointY[point];
+        int cell = 0;
+        int depth = 0;
+        while (true) {
+            if (cellChildren[cell] >= 0) {
+                cell = cellChildren[cell] + quadrant(cell, x, y);
+                depth++;
+            } else if (cellPoints[cell] < 0 || depth >= MAX_DEPTH) {
+                nextPoint[point] = cellPoints[cell];
+                cellPoints[cell] = point;
+                return;
+            } else {
+                int resident = cellPoints[cell];
+                cellPoints[cell] = -1;
+                subdivide(cell);
+                int target = cellChildren[cell] + quadrant(cell, pointX[resident], pointY[resident]);
+                nextPoint[resident] = -1;
+                cellPoints[target] = resident;
+            }
+        }
+    }
+
+    /**
+     * Computes the mass and center of mass of every cell.
+     * Children are always created after their parents, so a reverse sweep visits them first.
+     */
+    private void computeMasses() {
+        for (int cell = cellCount - 1; cell >= 0; cell--) {
+            double mass = 0, massX = 0, massY = 0;
+            int child = cellChildren[cell];
+            if (child >= 0) {
+                for (int i = child; i < child + 4; i++) {
+                    mass += cellMass[i];
+                    massX += cellMassX[i] * cellMass[i];
+                    massY += cellMassY[i] * cellMass[i];
+                }
+            } else {
+                for (int point = cellPoints[cell]; point >= 0; point = nextPoint[point]) {
+                    mass++;
+                    massX += pointX[point];
+                    massY += pointY[point];
+                }
+            }
+            cellMass[cell] = mass;
+            if (mass > 0) {
+                cellMassX[cell] = massX / mass;
+                cellMassY[cell] = massY / mass;
+            }
+        }
+    }
+
+    private int quadrant(int cell, double x, double y) {
+        return (x >= cellX[cell] ? 1 : 0) + (y >= cellY[cell] ? 2 : 0);
+    }
+
+    private boolean contains(int cell, double x, double y) {
+        double half = cellHalfSize[cell];
+        return Math.abs(x - cellX[cell]) <= half && Math.abs(y - cellY[cell]) <= half;
+    }
+
+    private void subdivide(int cell) {
+        double half = cellHalfSize[cell] / 2;
+        double x = cellX[cell];
+        double y = cellY[cell];
+        cellChildren[cell] = cellCount;
+        // Same order as quadrant(): left-top, right-top, left-bottom, right-bottom
+        newCell(x - half, y - half, half);
+        newCell(x + half, y - half, half);
+        newCell(x - half, y + half, half);
+        newCell(x + half, y + half, half);
+    }
+
+    private int newCell(double x, double y, double halfSize) {
+        if (cellCount == cellX.length) {
+            grow();
+        }
+        int cell = cellCount++;
+        cellX[cell] = x;
+        cellY[cell] = y;
+        cellHalfSize[cell] = halfSize;
+        cellMass[cell] = 0;
+        cellChildren[cell] = -1;
+        cellPoints[cell] = -1;
+        return cell;
+    }
+
+    private void grow() {
+        int capacity = cellX.length * 2;
+        cellX = Arrays.copyOf(cellX, capacity);
+        cellY = Arrays.copyOf(cellY, capacity);
+        cellHalfSize = Arrays.copyOf(cellHalfSize, capacity);
+        cellMass = Arrays.copyOf(cellMass, capacity);
+        cellMassX = Arrays.copyOf(cellMassX, capacity);
+        cellMassY = Arrays.copyOf(cellMassY, capacity);
+        cellChildren = Arrays.copyOf(cellChildren, capacity);
+        cellPoints = Arrays.copyOf(cellPoints, capacity);
+    }
+}
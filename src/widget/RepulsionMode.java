@@ -0,0 +1,42 @@
+/*
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package widget;
+
+/**
+ * Strategies available to compute the repulsion between nodes on every simulation step.
+ */
+public enum RepulsionMode {
+    /**
+     * Every pair of nodes is evaluated. O(V²) per step, but exact.
+     */
+    EXACT,
+    /**
+     * Far away groups of nodes are approximated by their center of mass using a quadtree.
+     * O(V log V) per step, with the error controlled by the opening angle (theta).
+     */
+    BARNES_HUT,
+    /**
+     * Only nodes closer than a cutoff radius repel each other, found by bucketing the nodes in a uniform grid.
+     * Close to O(V) per step for evenly spread layouts, but distant nodes are ignored altogether.
+     */
+    GRID,
+    /**
+     * Groups of nodes far from each other interact through multipole and local expansions over a quadtree, nearby
+     * nodes exactly. O(V) per step, with the error controlled by the expansion order. While only the nodes around a
+     * local change are simulated, their repulsion is approximated as with {@link #BARNES_HUT} instead.
+     */
+    FMM
+}
@@ -0,0 +1,208 @@
+/*
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package widget;
+
+import java.util.Arrays;
+
+/**
+ * Uniform grid over a set of boxes, which finds the boxes intersecting a rectangle without looking at the others.
+ * Points are boxes with no area. Every box is listed in each cell it overlaps, except for boxes spanning too many
+ * cells, which are kept aside and tested on every query. Boxes are bucketed with a counting sort into flat arrays
+ * which are only grown, never shrunk, so that rebuilding the index does not allocate once it reached its working
+ * size.
+ */
+public final class SpatialIndex {
+
+    private static final int BOXES_PER_CELL = 4;   // average amount of boxes per cell the grid is sized for
+    private static final int MAX_SPAN = 8;         // cells a box may cover along each axis before being kept aside
+
+    private double[] boxMinX = new double[0];
+    private double[] boxMinY = new double[0];
+    private double[] boxMaxX = new double[0];
+    private double[] boxMaxY = new double[0];
+    private int count = 0;
+
+    private double originX;
+    private double originY;
+    private double cellSize;
+    private int columns = 0;
+    private int rows = 0;
+    private int[] cellStart = new int[1];           // offset of the boxes of each cell within cellBoxes
+    private int[] cellBoxes = new int[0];           // boxes sorted by cell
+    private int[] largeBoxes = new int[0];          // boxes spanning too many cells
+    private int largeCount = 0;
+    private int[] stamp = new int[0];               // last query each box was found by, to report it once
+    private int query = 0;
+
+    /**
+     * Makes room for a given amount of boxes, whose coordinates are then written through {@link #setBox}.
+     *
+     * @param count Amount of boxes.
+     */
+    public void reset(int count) {
+        this.count = count;
+        if (boxMinX.length < count) {
+            boxMinX = new double[count];
+            boxMinY = new double[count];
+            boxMaxX = new double[count];
+            boxMaxY = new double[count];
+            largeBoxes = new int[count];
+            stamp = new int[count];
+        }
+    }
+
+    /**
+     * Sets the coordinates of a box.
+     *
+     * @param box  Box index.
+     * @param minX Left side.
+     * @param minY Top side.
+     * @param maxX Right side.
+     * @param maxY Bottom side.
+     */
+    public void setBox(int box, double minX, double minY, double maxX, double maxY) {
+        boxMinX[box] = minX;
+        boxMinY[box] = minY;
+        boxMaxX[box] = maxX;
+        boxMaxY[box] = maxY;
+    }
+
+    /**
+     * Buckets the boxes set since the last {@link #reset(int)}.
+     */
+    public void build() {
+        largeCount = 0;
+        if (count == 0) {
+            columns = rows = 0;
+            return;
+        }
+        double xMin, xMax, yMin, yMax;
+        xMin = yMin = Double.POSITIVE_INFINITY;
+        xMax = yMax = Double.NEGATIVE_INFINITY;
+        for (int box = 0; box < count; box++) {
+            xMin = Math.min(xMin, boxMinX[box]);
+            yMin = Math.min(yMin, boxMinY[box]);
+            xMax = Math.max(xMax, boxMaxX[box]);
+            yMax = Math.max(yMax, boxMaxY[box]);
+        }
+        double width = Math.max(xMax - xMin, 1e-9);
+        double height = Math.max(yMax - yMin, 1e-9);
+        cellSize = Math.sqrt(width * height * BOXES_PER_CELL / count);
+        cellSize = Math.max(cellSize, Math.max(width, height) / (count * BOXES_PER_CELL));
+        originX = xMin;
+        originY = yMin;
+        columns = (int) (width / cellSize) + 1;
+        rows = (int) (height / cellSize) + 1;
+        if (cellStart.length < columns * rows + 1) {
+            cellStart = new int[columns * rows + 1];
+        } else {
+            Arrays.fill(cellStart, 0, columns * rows + 1, 0);
+        }
+        int entries = 0;
+        for (int box = 0; box < count; box++) {
+            int left = column(boxMinX[box]);
+            int right = column(boxMaxX[box]);
+            int top = row(boxMinY[box]);
+            int bottom = row(boxMaxY[box]);
+            if (right - left >= MAX_SPAN || bottom - top >= MAX_SPAN) {
+                largeBoxes[largeCount++] = box;
+                continue;
+            }
+            for (int r = top; r <= bottom; r++) {
+                for (int c = left; c <= right; c++) {
+                    cellStart[r * columns + c]++;
+                    entries++;
+                }
+            }
+        }
+        for (int cell = 1; cell < columns * rows; cell++) {
+            cellStart[cell] += cellStart[cell - 1];
+        }
+        cellStart[columns * rows] = entries;
+        if (cellBoxes.length < entries) {
+            cellBoxes = new int[entries];
+        }
+        // Offsets point at the end of each cell, and are moved back to its start as the cell is filled backwards
+        for (int box = count - 1; box >= 0; box--) {
+            int left = column(boxMinX[box]);
+            int right = column(boxMaxX[box]);
+            int top = row(boxMinY[box]);
+            int bottom = row(boxMaxY[box]);
+            if (right - left >= MAX_SPAN || bottom - top >= MAX_SPAN) {
+                continue;
+            }
+            for (int r = top; r <= bottom; r++) {
+                for (int c = left; c <= right; c++) {
+                    cellBoxes[--cellStart[r * columns + c]] = box;
+                }
+            }
+        }
+    }
+
+    private int column(double x) {
+        return Math.max(0, Math.min(columns - 1, (int) ((x - originX) / cellSize)));
+    }
+
+    private int row(double y) {
+        return Math.max(0, Math.min(rows - 1, (int) ((y - originY) / cellSize)));
+    }
+
+    /**
+     * Finds the boxes intersecting a rectangle.
+     *
+     * @param minX   Left side of the rectangle.
+     * @param minY   Top side of the rectangle.
+     * @param maxX   Right side of the rectangle.
+     * @param maxY   Bottom side of the rectangle.
+     * @param result Destination of the boxes found, in ascending order, as long as the amount of boxes.
+     * @return Amount of boxes found.
+     */
+    public int query(double minX, double minY, double maxX, double maxY, int[] result) {
+        if (count == 0 || maxX < originX || maxY < originY
+                || minX > originX + columns * cellSize || minY > originY + rows * cellSize) {
+            return 0;
+        }
+        if (++query == Integer.MAX_VALUE) {
+            Arrays.fill(stamp, 0);
+            query = 1;
+        }
+        int found = 0;
+        for (int r = row(minY); r <= row(maxY); r++) {
+            for (int c = column(minX); c <= column(maxX); c++) {
+                int cell = r * columns + c;
+                for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+                    int box = cellBoxes[k];
+                    if (stamp[box] != query && intersects(box, minX, minY, maxX, maxY)) {
+                        stamp[box] = query;
+                        result[found++] = box;
+                    }
+                }
+            }
+        }
+        for (int k = 0; k < largeCount; k++) {
+            int box = largeBoxes[k];
+            if (intersects(box, minX, minY, maxX, maxY)) {
+                result[found++] = box;
+            }
+        }
+        Arrays.sort(result, 0, found);
+        return found;
+    }
+
+    private boolean intersects(int box, double minX, double minY, double maxX, double maxY) {
+        return boxMinX[box] <= maxX && boxMaxX[box] >= minX && boxMinY[box] <= maxY && boxMaxY[box] >= minY;
+    }
+}
@@ -0,0 +1,402 @@
+/*
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package widget;
+
+import java.util.Arrays;
+
+/**
+ * Stress majorization layout, after Gansner, Koren and North.
+ * Node distances are made to match graph distances, by minimizing the stress, the sum over pairs of nodes of
+ * w·(|xi - xj| - dij)², with dij the shortest path length and w = 1/dij². Each iteration replaces the stress by a
+ * quadratic bound that touches it at the current layout, whose minimum is found by solving a weighted Laplacian
+ * system per axis with the conjugate gradient method. The stress never increases, and given the same starting
+ * coordinates the result is always the same.
+ * <p>
+ * The full variant keeps a term for every pair of nodes, which takes O(V²) memory. With pivots, the sparse stress
+ * of Ortmann, Klimenta and Brandes is minimized instead: nodes keep terms to their neighbours and to k pivots only,
+ * each pivot term standing for the nodes around the pivot, in O(V·k) memory.
+ */
+public class StressLayout implements GraphLayout {
+
+    private int pivotCount = 0;                    //pivots of the sparse variant, 0 for the full stress
+    private double edgeLength = 100;               //desired length of an edge, model space units
+    private int maxIterations = 200;
+    private double tolerance = 1e-4;               //relative stress decrease under which the layout is done
+    private int maxSolverIterations = 100;         //conjugate gradient iterations per axis and iteration
+
+    private double stress = Double.NaN;
+    private int iterations = 0;
+
+    // Symmetric terms, the ones of node i at [termStart[i], termStart[i+1])
+    private int[] termStart;
+    private int[] termNode;
+    private double[] termDistance;
+    private double[] termWeight;
+    private double[] diagonal;                     //sum of the term weights of each node
+
+    @Override
+    public void apply(LayoutEngine<?, ?> engine) {
+        int size = engine.vertexCount();
+        if (size == 0) {
+            return;
+        }
+        int[] adjacencyStart = engine.adjacencyStart();
+        int[] adjacency = engine.adjacency();
+        TermBuilder terms = new TermBuilder(size);
+        if (pivotCount > 0 && pivotCount < size) {
+            addSparseTerms(adjacencyStart, adjacency, terms);
+        } else {
+            addFullTerms(adjacencyStart, adjacency, terms);
+        }
+        terms.build();
+
+        double[] x = new double[size];
+        double[] y = new double[size];
+        engine.copyCoordinates(x, y);
+        double[] rightX = new double[size];
+        double[] rightY = new double[size];
+        Solver solver = new Solver(size);
+        stress = stress(x, y);
+        iterations = 0;
+        while (iterations < maxIterations) {
+            iterations++;
+            majorant(x, y, rightX, rightY);
+            solver.solve(rightX, x);
+            solver.solve(rightY, y);
+            double previous = stress;
+            stress = stress(x, y);
+            if (previous - stress <= tolerance * previous) {
+                break;
+            }
+        }
+        engine.setCoordinates(x, y);
+        termStart = termNode = null;
+        termDistance = termWeight = diagonal = null;
+    }
+
+    /**
+     * Adds a term for every pair of connected nodes. Nodes in different components are kept one edge further
+     * apart than the farthest connected pair.
+     */
+    private void addFullTerms(int[] adjacencyStart, int[] adjacency, TermBuilder terms) {
+        int size = adjacencyStart.length - 1;
+        int[][] distances = new int[size][size];
+        int[] queue = new int[size];
+        int diameter = 0;
+        for (int i = 0; i < size; i++) {
+            diameter = Math.max(diameter,
+                    GraphDistances.breadthFirst(adjacencyStart, adjacency, i, distances[i], queue));
+        }
+        for (int i = 0; i < size; i++) {
+            for (int j = i + 1; j < size; j++) {
+                int hops = distances[i][j] == GraphDistances.UNREACHABLE ? diameter + 1 : distances[i][j];
+                double distance = hops * edgeLength;
+                terms.add(i, j, distance, 1 / (distance * distance));
+            }
+        }
+    }
+
+    /**
+     * Adds a term for every edge, and from every node to every pivot other than itself. A pivot term stands for the nodes of the
+     * pivot region (the nodes nearest to it than to any other pivot) that are closer to the pivot than to the node,
+     * so its weight is multiplied by their amount.
+     */
+    private void addSparseTerms(int[] adjacencyStart, int[] adjacency, TermBuilder terms) {
+        int size = adjacencyStart.length - 1;
+        int[] pivots = new int[pivotCount];
+        int[][] distances = GraphDistances.maxMinPivots(adjacencyStart, adjacency, pivots);
+        boolean[] isPivot = new boolean[size];
+        for (int pivot : pivots) {
+            isPivot[pivot] = true;
+        }
+        int diameter = 0;
+        for (int[] row : distances) {
+            for (int distance : row) {
+                diameter = Math.max(diameter, distance);
+            }
+        }
+        // regionCount[p][h]: nodes of the region of pivot p at most h edges away from it
+        int[] region = new int[size];
+        int[][] regionCount = new int[pivotCount][diameter + 1];
+        for (int i = 0; i < size; i++) {
+            int nearest = -1;
+            for (int p = 0; p < pivotCount; p++) {
+                int distance = distances[p][i];
+                if (distance != GraphDistances.UNREACHABLE && (nearest < 0 || distance < distances[nearest][i])) {
+                    nearest = p;
+                }
+            }
+            region[i] = nearest;
+            if (nearest >= 0) {
+                regionCount[nearest][distances[nearest][i]]++;
+            }
+        }
+        for (int[] counts : regionCount) {
+            for (int h = 1; h <= diameter; h++) {
+                counts[h] += counts[h - 1];
+            }
+        }
+
+        for (int i = 0; i < size; i++) {
+            for (int k = adjacencyStart[i]; k < adjacencyStart[i + 1]; k++) {
+                int j = adjacency[k];
+                if (i < j) {
+                    terms.add(i, j, edgeLength, 1 / (edgeLength * edgeLength));
+                }
+            }
+            for (int p = 0; p < pivotCount; p++) {
+                int pivot = pivots[p];
+                // A pair of pivots gets a single term, added from the pivot with the larger ordinal
+                if (pivot == i || isPivot[i] && i < pivot) {
+                    continue;
+                }
+                int hops = distances[p][i];
+                int represented = 1;
+                if (hops == GraphDistances.UNREACHABLE) {
+                    hops = diameter + 1;
+                } else {
+                    represented = regionCount[p][hops / 2];
+                }
+                double distance = hops * edgeLength;
+                terms.add(i, pivot, distance, represented / (distance * distance));
+            }
+        }
+    }
+
+    /**
+     * Computes the right hand side of the quadratic bound of the stress at the current layout, which pulls every
+     * node along its terms towards the term distance.
+     */
+    private void majorant(double[] x, double[] y, double[] rightX, double[] rightY) {
+        for (int i = 0; i < x.length; i++) {
+            double sumX = 0;
+            double sumY = 0;
+            for (int t = termStart[i]; t < termStart[i + 1]; t++) {
+                int j = termNode[t];
+                double dx = x[i] - x[j];
+                double dy = y[i] - y[j];
+                double length = Math.sqrt(dx * dx + dy * dy);
+                if (length > 0) {
+                    double factor = termWeight[t] * termDistance[t] / length;
+                    sumX += factor * dx;
+                    sumY += factor * dy;
+                }
+            }
+            rightX[i] = sumX;
+            rightY[i] = sumY;
+        }
+    }
+
+    private double stress(double[] x, double[] y) {
+        double sum = 0;
+        for (int i = 0; i < x.length; i++) {
+            for (int t = termStart[i]; t < termStart[i + 1]; t++) {
+                int j = termNode[t];
+                if (j > i) {
+                    double error = Math.hypot(x[i] - x[j], y[i] - y[j]) - termDistance[t];
+                    sum += termWeight[t] * error * error;
+                }
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Multiplies the weighted Laplacian of the terms by a vector.
+     */
+    private void multiply(double[] vector, double[] result) {
+        for (int i = 0; i < vector.length; i++) {
+            double sum = diagonal[i] * vector[i];
+            for (int t = termStart[i]; t < termStart[i + 1]; t++) {
+                sum -= termWeight[t] * vector[termNode[t]];
+            }
+            result[i] = sum;
+        }
+    }
+
+    /**
+     * Sets the amount of pivots of the sparse stress variant.
+     *
+     * @param pivots Amount of pivots, or 0 to minimize the full stress.
+     */
+    public void setPivots(int pivots) {
+        if (pivots < 0) {
+            throw new IllegalArgumentException("Pivots can't be negative");
+        }
+        this.pivotCount = pivots;
+    }
+
+    /**
+     * Sets the desired distance between adjacent nodes.
+     *
+     * @param edgeLength Edge length, in model space units.
+     */
+    public void setEdgeLength(double edgeLength) {
+        if (!(edgeLength > 0)) {
+            throw new IllegalArgumentException("Edge length must be positive");
+        }
+        this.edgeLength = edgeLength;
+    }
+
+    /**
+     * Sets when the layout stops being improved.
+     *
+     * @param maxIterations Largest amount of majorization iterations.
+     * @param tolerance     Relative stress decrease of an iteration under which the layout is considered done.
+     */
+    public void setIterations(int maxIterations, double tolerance) {
+        if (maxIterations < 0 || tolerance < 0) {
+            throw new IllegalArgumentException("Iterations and tolerance can't be negative");
+        }
+        this.maxIterations = maxIterations;
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Returns the stress of the last computed layout.
+     *
+     * @return Stress, or NaN if no layout was computed.
+     */
+    public double getStress() {
+        return stress;
+    }
+
+    /**
+     * Returns the amount of majorization iterations used by the last computed layout.
+     *
+     * @return Iterations.
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Collects terms as node pairs, then stores them in both directions grouped by node.
+     */
+    private final class TermBuilder {
+        private final int size;
+        private int count = 0;
+        private int[] first = new int[16];
+        private int[] second = new int[16];
+        private double[] distance = new double[16];
+        private double[] weight = new double[16];
+
+        TermBuilder(int size) {
+            this.size = size;
+        }
+
+        void add(int i, int j, double termDistance, double termWeight) {
+            if (count == first.length) {
+                int capacity = count * 2;
+                first = Arrays.copyOf(first, capacity);
+                second = Arrays.copyOf(second, capacity);
+                distance = Arrays.copyOf(distance, capacity);
+                weight = Arrays.copyOf(weight, capacity);
+            }
+            first[count] = i;
+            second[count] = j;
+            distance[count] = termDistance;
+            weight[count] = termWeight;
+            count++;
+        }
+
+        void build() {
+            termStart = new int[size + 1];
+            for (int t = 0; t < count; t++) {
+                termStart[first[t] + 1]++;
+                termStart[second[t] + 1]++;
+            }
+            for (int i = 0; i < size; i++) {
+                termStart[i + 1] += termStart[i];
+            }
+            int[] fill = Arrays.copyOf(termStart, size);
+            termNode = new int[count * 2];
+            termDistance = new double[count * 2];
+            termWeight = new double[count * 2];
+            diagonal = new double[size];
+            for (int t = 0; t < count; t++) {
+                int i = first[t];
+                int j = second[t];
+                int forward = fill[i]++;
+                int backward = fill[j]++;
+                termNode[forward] = j;
+                termNode[backward] = i;
+                termDistance[forward] = termDistance[backward] = distance[t];
+                termWeight[forward] = termWeight[backward] = weight[t];
+                diagonal[i] += weight[t];
+                diagonal[j] += weight[t];
+            }
+        }
+    }
+
+    /**
+     * Conjugate gradient solver of the weighted Laplacian system. The Laplacian is singular, as moving the whole
+     * layout does not change the stress, but the right hand side of a majorant always sums to zero, which keeps
+     * the system consistent.
+     */
+    private final class Solver {
+        private final double[] residual;
+        private final double[] direction;
+        private final double[] product;
+
+        Solver(int size) {
+            residual = new double[size];
+            direction = new double[size];
+            product = new double[size];
+        }
+
+        /**
+         * Solves the system for a right hand side, starting from the current coordinates.
+         *
+         * @param right       Right hand side.
+         * @param coordinates Starting guess, replaced by the solution.
+         */
+        void solve(double[] right, double[] coordinates) {
+            multiply(coordinates, product);
+            double rightNorm = 0;
+            double squaredResidual = 0;
+            for (int i = 0; i < coordinates.length; i++) {
+                residual[i] = right[i] - product[i];
+                direction[i] = residual[i];
+                rightNorm += right[i] * right[i];
+                squaredResidual += residual[i] * residual[i];
+            }
+            double limit = 1e-10 * rightNorm;
+            for (int iteration = 0; iteration < maxSolverIterations && squaredResidual > limit; iteration++) {
+                multiply(direction, product);
+                double curvature = 0;
+                for (int i = 0; i < coordinates.length; i++) {
+                    curvature += direction[i] * product[i];
+                }
+                if (!(curvature > 0)) {
+                    break;
+                }
+                double step = squaredResidual / curvature;
+                double nextSquaredResidual = 0;
+                for (int i = 0; i < coordinates.length; i++) {
+                    coordinates[i] += step * direction[i];
+                    residual[i] -= step * product[i];
+                    nextSquaredResidual += residual[i] * residual[i];
+                }
+                double ratio = nextSquaredResidual / squaredResidual;
+                for (int i = 0; i < coordinates.length; i++) {
+                    direction[i] = residual[i] + ratio * direction[i];
+                }
+                squaredResidual = nextSquaredResidual;
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package widget;
+
+/**
+ * Finds the nodes and edge spots of a layout that show on a canvas, so that a frame only draws those.
+ * Nodes are indexed by their position and edge spots (the edges between a pair of nodes) by their bounding box,
+ * widened by how far parallel edges bend away from the straight line. Indexing takes linear time and only needs
+ * to be done when the nodes move, while looking up what is on the canvas takes time in proportion to the result.
+ */
+public final class ViewCulling {
+
+    public static final double MARGIN = 200;       //pixels around the canvas searched too, for labels to show
+
+    private final SpatialIndex nodeIndex = new SpatialIndex();
+    private final SpatialIndex edgeSpotIndex = new SpatialIndex();
+    private int[] visibleNodes = new int[0];
+    private int[] visibleEdgeSpots = new int[0];
+
+    /**
+     * Indexes a layout.
+     *
+     * @param x              X coordinates of the nodes.
+     * @param y              Y coordinates of the nodes.
+     * @param nodeCount      Amount of nodes.
+     * @param spotEnds       Indices of the nodes at both ends of each edge spot, two per spot.
+     * @param spotEdgeCounts Amount of edges of each spot.
+     * @param spotCount      Amount of edge spots.
+     */
+    public void index(double[] x, double[] y, int nodeCount, int[] spotEnds, int[] spotEdgeCounts, int spotCount) {
+        nodeIndex.reset(nodeCount);
+        for (int i = 0; i < nodeCount; i++) {
+            nodeIndex.setBox(i, x[i], y[i], x[i], y[i]);
+        }
+        nodeIndex.build();
+        edgeSpotIndex.reset(spotCount);
+        for (int spot = 0; spot < spotCount; spot++) {
+            int from = spotEnds[2 * spot];
+            int to = spotEnds[2 * spot + 1];
+            double bend = bend(spotEdgeCounts[spot]);
+            edgeSpotIndex.setBox(spot,
+                    Math.min(x[from], x[to]) - bend,
+                    Math.min(y[from], y[to]) - bend,
+                    Math.max(x[from], x[to]) + bend,
+                    Math.max(y[from], y[to]) + bend);
+        }
+        edgeSpotIndex.build();
+        if (visibleNodes.length < nodeCount) {
+            visibleNodes = new int[nodeCount];
+        }
+        if (visibleEdgeSpots.length < spotCount) {
+            visibleEdgeSpots = new int[spotCount];
+        }
+    }
+
+    /**
+     * Obtains how far the farthest of a number of parallel edges bends away from the line between its nodes.
+     *
+     * @param edgeCount Amount of parallel edges.
+     * @return Distance, in model space units.
+     */
+    static double bend(int edgeCount) {
+        return edgeCount > 1 ? edgeCount * 5 + 10 : 0;
+    }
+
+    /**
+     * Finds the nodes on a canvas, or close enough to it for their labels to show.
+     *
+     * @param zoom   Pixels per model space unit.
+     * @param shiftX Canvas position of the model space origin.
+     * @param shiftY Canvas position of the model space origin.
+     * @param width  Canvas width.
+     * @param height Canvas height.
+     * @return Amount of nodes found, which are listed in ascending order by {@link #visibleNodes()}.
+     */
+    public int cullNodes(double zoom, double shiftX, double shiftY, double width, double height) {
+        return query(nodeIndex, visibleNodes, zoom, shiftX, shiftY, width, height);
+    }
+
+    /**
+     * Finds the edge spots that may cross a canvas, or come close enough to it for their labels to show.
+     *
+     * @param zoom   Pixels per model space unit.
+     * @param shiftX Canvas position of the model space origin.
+     * @param shiftY Canvas position of the model space origin.
+     * @param width  Canvas width.
+     * @param height Canvas height.
+     * @return Amount of edge spots found, which are listed in ascending order by {@link #visibleEdgeSpots()}.
+     */
+    public int cullEdgeSpots(double zoom, double shiftX, double shiftY, double width, double height) {
+        return query(edgeSpotIndex, visibleEdgeSpots, zoom, shiftX, shiftY, width, height);
+    }
+
+    private static int query(SpatialIndex index, int[] result,
+                             double zoom, double shiftX, double shiftY, double width, double height) {
+        return index.query(
+                (-MARGIN - shiftX) / zoom,
+                (-MARGIN - shiftY) / zoom,
+                (width + MARGIN - shiftX) / zoom,
+                (height + MARGIN - shiftY) / zoom,
+                result);
+    }
+
+    /**
+     * Returns the nodes found by the last {@link #cullNodes}.
+     *
+     * @return Node indices, only valid up to the amount found.
+     */
+    public int[] visibleNodes() {
+        return visibleNodes;
+    }
+
+    /**
+     * Returns the edge spots found by the last {@link #cullEdgeSpots}.
+     *
+     * @return Edge spot indices, only valid up to the amount found.
+     */
+    public int[] visibleEdgeSpots() {
+        return visibleEdgeSpots;
+    }
+}
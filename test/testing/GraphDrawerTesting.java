@@ -17,15 +17,41 @@ package testing;
 
 import tads.SimpleGraph;
 import random.Point;
+import widget.AnimationState;
+import widget.CoolingSchedule;
+import widget.CellGrid;
+import widget.FrameBudget;
 import widget.FxMath;
 import widget.GraphDrawer;
+import widget.LabelSlots;
+import widget.LayoutEngine;
+import widget.LayoutSnapshot;
+import widget.LayoutWorker;
+import widget.LevelOfDetail;
+import widget.MultilevelLayout;
+import widget.MultipoleTree;
+import widget.PivotMds;
+import widget.QuadTree;
+import widget.RepulsionMode;
+import widget.SpatialIndex;
+import widget.StressLayout;
+import widget.ViewCulling;
 import javafx.geometry.Point2D;
 import tads.Graph;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Consumer;
+
 import static java.lang.Math.PI;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class GraphDrawerTesting {
     public Graph twoPointConnectedGraph;
@@ -84,6 +110,50 @@ public class GraphDrawerTesting {
         assertEquals(result.getY(), -0.06426614116556527, 0.01);
     }
 
+    @Test
+    public void forceKernelTest() {
+        Point2D point1 = new Point2D(12.5, -40);
+        Point2D point2 = new Point2D(-3, 27.25);
+        Point2D attraction = FxMath.attractiveForce(point1, point2, 4,
+                GraphDrawer.SPRING_FORCE, GraphDrawer.SPRING_SCALE);
+        Point2D repulsion = FxMath.repellingForce(point1, point2, GraphDrawer.REPULSION_SCALE);
+
+        double dx = point2.getX() - point1.getX();
+        double dy = point2.getY() - point1.getY();
+        // Both forces act along the line between the nodes, pulling towards and pushing away from the other one
+        assertEquals(0, attraction.getX() * dy - attraction.getY() * dx, 1e-9);
+        assertEquals(0, repulsion.getX() * dy - repulsion.getY() * dx, 1e-9);
+        assertTrue(attraction.getX() * dx + attraction.getY() * dy > 0);
+        assertTrue(repulsion.getX() * dx + repulsion.getY() * dy < 0);
+        // And are the same, reversed, on the other node
+        Point2D backAttraction = FxMath.attractiveForce(point2, point1, 4,
+                GraphDrawer.SPRING_FORCE, GraphDrawer.SPRING_SCALE);
+        Point2D backRepulsion = FxMath.repellingForce(point2, point1, GraphDrawer.REPULSION_SCALE);
+        assertEquals(-attraction.getX(), backAttraction.getX(), 1e-12);
+        assertEquals(-attraction.getY(), backAttraction.getY(), 1e-12);
+        assertEquals(-repulsion.getX(), backRepulsion.getX(), 1e-12);
+        assertEquals(-repulsion.getY(), backRepulsion.getY(), 1e-12);
+
+        // The primitive kernels add the displacement scaled by the scalar factors, touching only the given index
+        double squaredDistance = dx * dx + dy * dy;
+        double attractionFactor = FxMath.attractiveFactor(squaredDistance, 4,
+                GraphDrawer.SPRING_FORCE, GraphDrawer.SPRING_SCALE);
+        double repulsionFactor = FxMath.repellingFactor(squaredDistance, GraphDrawer.REPULSION_SCALE);
+        double[] forceX = {0, 1, 0};
+        double[] forceY = {0, -1, 0};
+        FxMath.addAttractiveForce(point1.getX(), point1.getY(), point2.getX(), point2.getY(), 4,
+                GraphDrawer.SPRING_FORCE, GraphDrawer.SPRING_SCALE, forceX, forceY, 1);
+        assertEquals(1 + dx * attractionFactor, forceX[1], 0);
+        assertEquals(-1 + dy * attractionFactor, forceY[1], 0);
+        assertEquals(attraction.getX(), forceX[1] - 1, 1e-12);
+        assertEquals(attraction.getY(), forceY[1] + 1, 1e-12);
+        FxMath.addRepellingForce(point1.getX(), point1.getY(), point2.getX(), point2.getY(),
+                GraphDrawer.REPULSION_SCALE, forceX, forceY, 1);
+        assertEquals(1 + dx * attractionFactor + dx * repulsionFactor, forceX[1], 0);
+        assertEquals(-1 + dy * attractionFactor + dy * repulsionFactor, forceY[1], 0);
+        assertEquals(0, forceX[0] + forceY[0] + forceX[2] + forceY[2], 0);
+    }
+
     @Test
     public void mathTest() {
         Point2D point1 = new Point2D(
@@ -100,6 +170,25 @@ public class GraphDrawerTesting {
         assertEquals(PI / 4, angle, 0.1);
     }
 
+    @Test
+    public void edgeGeometryTest() {
+        // Edges are bent with primitive coordinates, which must place control points like the Point2D helpers
+        Random random = new Random(9);
+        for (int i = 0; i < 1000; i++) {
+            Point2D from = new Point2D(random.nextInt(20), random.nextInt(20));
+            Point2D to = new Point2D(random.nextInt(20), random.nextInt(20));
+            if (from.getX() == to.getX() && from.getY() == to.getY()) {
+                continue;
+            }
+            double angle = FxMath.getReciprocalAngle(from.getX(), from.getY(), to.getX(), to.getY());
+            assertEquals(FxMath.getAngle(from, to) - PI / 2, angle, 0);
+            double shift = random.nextInt(40) - 20;
+            Point2D control = FxMath.shiftPoint(FxMath.getMiddlePoint(from, to), angle, shift);
+            assertEquals(control.getX(), (from.getX() + to.getX()) / 2 + Math.cos(angle) * shift, 0);
+            assertEquals(control.getY(), (from.getY() + to.getY()) / 2 + Math.sin(angle) * shift, 0);
+        }
+    }
+
     @Test
     public void pointPlacementTest() {
         Point2D point1 = new Point2D(
@@ -117,4 +206,995 @@ public class GraphDrawerTesting {
         assertEquals(0.7929, controlPoint.getX(), 0.0001);
         assertEquals(3.2071, controlPoint.getY(), 0.0001);
     }
+
+    @Test
+    public void barnesHutTest() {
+        Random random = new Random(42);
+        int count = 50;
+        double[] x = new double[count];
+        double[] y = new double[count];
+        for (int i = 0; i < count; i++) {
+            x[i] = random.nextDouble() * 1000;
+            y[i] = random.nextDouble() * 1000;
+        }
+        QuadTree tree = new QuadTree();
+        tree.build(x, y, count);
+        double[] exactX = new double[count];
+        double[] exactY = new double[count];
+        double[] treeX = new double[count];
+        double[] treeY = new double[count];
+        double[] approximateX = new double[count];
+        double[] approximateY = new double[count];
+        for (int i = 0; i < count; i++) {
+            for (int j = 0; j < count; j++) {
+                if (i == j) {
+                    continue;
+                }
+                Point2D force = FxMath.repellingForce(
+                        new Point2D(x[i], y[i]),
+                        new Point2D(x[j], y[j]),
+                        GraphDrawer.REPULSION_SCALE);
+                exactX[i] += force.getX();
+                exactY[i] += force.getY();
+            }
+            tree.accumulateRepulsion(i, 0, GraphDrawer.REPULSION_SCALE, treeX, treeY);
+            tree.accumulateRepulsion(i, 0.5, GraphDrawer.REPULSION_SCALE, approximateX, approximateY);
+        }
+        for (int i = 0; i < count; i++) {
+            double magnitude = Math.hypot(exactX[i], exactY[i]);
+            assertEquals(exactX[i], treeX[i], 1e-9 * magnitude);
+            assertEquals(exactY[i], treeY[i], 1e-9 * magnitude);
+            assertEquals(exactX[i], approximateX[i], 0.05 * magnitude);
+            assertEquals(exactY[i], approximateY[i], 0.05 * magnitude);
+        }
+    }
+
+    @Test
+    public void cellGridTest() {
+        Random random = new Random(7);
+        int count = 200;
+        double cutoff = 120;
+        double[] x = new double[count];
+        double[] y = new double[count];
+        for (int i = 0; i < count; i++) {
+            x[i] = random.nextDouble() * 1000;
+            y[i] = random.nextDouble() * 1000;
+        }
+        CellGrid grid = new CellGrid();
+        grid.build(x, y, count, cutoff);
+        double[] expectedX = new double[count];
+        double[] expectedY = new double[count];
+        double[] gridX = new double[count];
+        double[] gridY = new double[count];
+        for (int i = 0; i < count; i++) {
+            for (int j = 0; j < count; j++) {
+                if (i != j && Math.hypot(x[j] - x[i], y[j] - y[i]) < cutoff) {
+                    Point2D force = FxMath.repellingForce(
+                            new Point2D(x[i], y[i]), new Point2D(x[j], y[j]), GraphDrawer.REPULSION_SCALE);
+                    expectedX[i] += force.getX();
+                    expectedY[i] += force.getY();
+                }
+            }
+            grid.accumulateRepulsion(i, cutoff, GraphDrawer.REPULSION_SCALE, gridX, gridY);
+        }
+        for (int i = 0; i < count; i++) {
+            double magnitude = Math.hypot(expectedX[i], expectedY[i]);
+            assertEquals(expectedX[i], gridX[i], 1e-9 * magnitude);
+            assertEquals(expectedY[i], gridY[i], 1e-9 * magnitude);
+        }
+    }
+
+    @Test
+    public void vectorizedRepulsionTest() {
+        SimpleGraph<Point, Integer> graph = new SimpleGraph<>();
+        Graph.Vertex<Point> previous = null;
+        for (int i = 0; i < 30; i++) {
+            Graph.Vertex<Point> vertex = graph.addVertex(new Point("p" + i));
+            if (previous != null) {
+                graph.addEdge(previous, vertex, i);
+            }
+            previous = vertex;
+        }
+        LayoutEngine<Point, Integer> scalar = new LayoutEngine<>(graph);
+        LayoutEngine<Point, Integer> vectorized = new LayoutEngine<>(graph);
+        vectorized.setVectorizedRepulsion(true);
+        vectorized.setCoordinates(scalar.getCoordinates());
+        scalar.simulateSingleStep(null);
+        vectorized.simulateSingleStep(null);
+        for (int i = 0; i < scalar.vertexCount(); i++) {
+            assertEquals(scalar.getX(i), vectorized.getX(i), 1e-9);
+            assertEquals(scalar.getY(i), vectorized.getY(i), 1e-9);
+        }
+    }
+
+    @Test
+    public void symmetricRepulsionTest() {
+        SimpleGraph<Point, Integer> graph = new SimpleGraph<>();
+        List<Graph.Vertex<Point>> vertices = new ArrayList<>();
+        for (int i = 0; i < 2100; i++) {
+            vertices.add(graph.addVertex(new Point("p" + i)));
+            if (i > 0) {
+                graph.addEdge(vertices.get(i / 2), vertices.get(i), i);
+            }
+        }
+        for (boolean vectorized : new boolean[]{false, true}) {
+            // A serial step visits every pair once, a parallel one sums every row of the matrix apart
+            LayoutEngine<Point, Integer> symmetric = new LayoutEngine<>(graph);
+            LayoutEngine<Point, Integer> rows = new LayoutEngine<>(graph);
+            symmetric.setRepulsionMode(RepulsionMode.EXACT);
+            symmetric.setVectorizedRepulsion(vectorized);
+            rows.setRepulsionMode(RepulsionMode.EXACT);
+            rows.setParallelism(2);
+            rows.setCoordinates(symmetric.getCoordinates());
+            symmetric.simulateSingleStep(null);
+            rows.simulateSingleStep(null);
+            rows.setParallelism(1);
+            long pairs = (long) vertices.size() * (vertices.size() - 1);
+            assertEquals(pairs / 2, symmetric.getExactPairCount());
+            assertEquals(pairs, rows.getExactPairCount());
+            for (int i = 0; i < vertices.size(); i++) {
+                assertEquals(rows.getX(i), symmetric.getX(i), 1e-9);
+                assertEquals(rows.getY(i), symmetric.getY(i), 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void headlessEngineTest() {
+        SimpleGraph<Point, Integer> graph = new SimpleGraph<>();
+        List<Graph.Vertex<Point>> path = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            path.add(graph.addVertex(new Point("p" + i)));
+            if (i > 0) {
+                graph.addEdge(path.get(i - 1), path.get(i), i);
+            }
+        }
+        // The engine lays a graph out on its own, no widget or toolkit involved
+        LayoutEngine<Point, Integer> engine = new LayoutEngine<>();
+        engine.setSeed(3);
+        engine.setInitialLayout(null);
+        engine.setSpawnArea(200, 100);
+        engine.setGraph(graph);
+        assertEquals(graph, engine.getGraph());
+        assertEquals(path.size(), engine.vertexCount());
+        double[] box = engine.getBoundaries();
+        double spread = Math.pow(path.size(), .3);
+        assertTrue(box[0] >= 0 && box[2] <= 200 * spread);
+        assertTrue(box[1] >= 0 && box[3] <= 100 * spread);
+
+        engine.setCoolingSchedule(CoolingSchedule.ADAPTIVE);
+        for (int step = 0; step < 2000 && !engine.isConverged(); step++) {
+            engine.simulateSingleStep(null);
+        }
+        assertTrue(engine.isConverged());
+        assertEquals(engine.getStepCount(), engine.getConvergedStep());
+
+        // Moving a node from outside unsettles the layout
+        engine.setLocation(path.get(0), -500, -500);
+        assertTrue(!engine.isConverged());
+        assertEquals(-500, engine.getX(engine.indexOf(path.get(0))), 0);
+
+        engine.setGraph(null);
+        assertEquals(0, engine.vertexCount());
+    }
+
+    @Test
+    public void layoutStateTest() {
+        SimpleGraph<Point, Integer> graph = new SimpleGraph<>();
+        List<Graph.Vertex<Point>> vertices = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            vertices.add(graph.addVertex(new Point("p" + i)));
+            if (i > 0) {
+                graph.addEdge(vertices.get((i - 1) / 2), vertices.get(i), i);
+            }
+        }
+        LayoutEngine<Point, Integer> engine = new LayoutEngine<>(graph);
+        engine.advanceSteps(10);
+
+        // Ordinals are dense and index the coordinate arrays, read one node or all at once
+        double[] coordinates = engine.getCoordinates();
+        double[] x = new double[engine.vertexCount()];
+        double[] y = new double[engine.vertexCount()];
+        engine.copyCoordinates(x, y);
+        for (int i = 0; i < engine.vertexCount(); i++) {
+            assertEquals(i, engine.indexOf(engine.vertexAt(i)));
+            assertEquals(engine.getX(i), coordinates[2 * i], 0);
+            assertEquals(engine.getY(i), coordinates[2 * i + 1], 0);
+            assertEquals(engine.getX(i), x[i], 0);
+            assertEquals(engine.getY(i), y[i], 0);
+            x[i] = i;
+            y[i] = -i;
+        }
+        engine.setCoordinates(x, y);
+        for (int i = 0; i < engine.vertexCount(); i++) {
+            assertEquals(i, engine.getX(i), 0);
+            assertEquals(-i, engine.getY(i), 0);
+        }
+
+        // Removing a node compacts the ordinals, every other node keeps its coordinates
+        double[] before = new double[2 * vertices.size()];
+        for (int i = 0; i < vertices.size(); i++) {
+            before[2 * i] = engine.getX(engine.indexOf(vertices.get(i)));
+            before[2 * i + 1] = engine.getY(engine.indexOf(vertices.get(i)));
+        }
+        graph.removeVertex(vertices.get(20));
+        engine.refreshGraph();
+        assertEquals(vertices.size() - 1, engine.vertexCount());
+        for (int i = 0; i < engine.vertexCount(); i++) {
+            assertEquals(i, engine.indexOf(engine.vertexAt(i)));
+        }
+        for (int i = 0; i < vertices.size(); i++) {
+            if (i != 20) {
+                int index = engine.indexOf(vertices.get(i));
+                assertEquals(before[2 * i], engine.getX(index), 0);
+                assertEquals(before[2 * i + 1], engine.getY(index), 0);
+            }
+        }
+    }
+
+    @Test
+    public void incrementalLayoutTest() {
+        SimpleGraph<Point, Integer> graph = new SimpleGraph<>();
+        List<Graph.Vertex<Point>> path = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            path.add(graph.addVertex(new Point("p" + i)));
+            if (i > 0) {
+                graph.addEdge(path.get(i - 1), path.get(i), i);
+            }
+        }
+        LayoutEngine<Point, Integer> engine = new LayoutEngine<>(graph);
+        engine.advanceSteps(100);
+        double[] before = new double[path.size() * 2];
+        for (int i = 0; i < path.size(); i++) {
+            before[2 * i] = engine.getX(engine.indexOf(path.get(i)));
+            before[2 * i + 1] = engine.getY(engine.indexOf(path.get(i)));
+        }
+        double edgeLength = Math.hypot(before[2] - before[0], before[3] - before[1]);
+
+        Graph.Vertex<Point> added = graph.addVertex(new Point("added"));
+        graph.addEdge(path.get(0), added, 10);
+        engine.refreshGraph();
+        assertEquals(path.size() + 1, engine.vertexCount());
+        for (int i = 0; i < path.size(); i++) {
+            assertEquals(before[2 * i], engine.getX(engine.indexOf(path.get(i))), 0);
+            assertEquals(before[2 * i + 1], engine.getY(engine.indexOf(path.get(i))), 0);
+        }
+        int index = engine.indexOf(added);
+        assertTrue(Math.hypot(engine.getX(index) - before[0], engine.getY(index) - before[1]) <= edgeLength);
+
+        // Only the nodes up to two hops away from the new node or its neighbour move
+        for (int step = 0; step < 1000 && !engine.isConverged(); step++) {
+            engine.simulateSingleStep(null);
+        }
+        for (int i = 3; i < path.size(); i++) {
+            assertEquals(before[2 * i], engine.getX(engine.indexOf(path.get(i))), 0);
+            assertEquals(before[2 * i + 1], engine.getY(engine.indexOf(path.get(i))), 0);
+        }
+    }
+
+    @Test
+    public void localRefreshWorkTest() {
+        for (int components = 1; components <= 2; components++) {
+            for (RepulsionMode mode : new RepulsionMode[]{RepulsionMode.EXACT, RepulsionMode.FMM}) {
+                for (boolean vectorized : new boolean[]{false, true}) {
+                    SimpleGraph<Point, Integer> graph = new SimpleGraph<>();
+                    List<Graph.Vertex<Point>> path = new ArrayList<>();
+                    for (int c = 0; c < components; c++) {
+                        for (int i = 0; i < 100; i++) {
+                            path.add(graph.addVertex(new Point("p" + c + "_" + i)));
+                            if (i > 0) {
+                                graph.addEdge(path.get(path.size() - 2), path.get(path.size() - 1), path.size());
+                            }
+                        }
+                    }
+                    LayoutEngine<Point, Integer> engine = new LayoutEngine<>(graph);
+                    engine.setRepulsionMode(mode);
+                    engine.setVectorizedRepulsion(vectorized);
+                    engine.advanceSteps(20);
+                    graph.addEdge(path.get(0), graph.addVertex(new Point("added")), 0);
+                    engine.refreshGraph();
+                    double[] before = engine.getCoordinates();
+
+                    // Only the rows of the few nodes around the change get computed, not every pair
+                    long pairs = engine.getExactPairCount();
+                    engine.advanceSteps(10);
+                    pairs = engine.getExactPairCount() - pairs;
+                    if (mode == RepulsionMode.EXACT) {
+                        assertTrue(pairs > 0);
+                        assertTrue(pairs < 10 * 10 * 100);
+                    } else {
+                        assertEquals(0, pairs);
+                    }
+                    double[] after = engine.getCoordinates();
+                    for (int i = 10; i < path.size(); i++) {
+                        int index = engine.indexOf(path.get(i));
+                        assertEquals(before[2 * index], after[2 * index], 0);
+                        assertEquals(before[2 * index + 1], after[2 * index + 1], 0);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void forceModelChangeTest() {
+        SimpleGraph<Point, Integer> graph = new SimpleGraph<>();
+        List<Graph.Vertex<Point>> path = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            path.add(graph.addVertex(new Point("p" + i)));
+            if (i > 0) {
+                graph.addEdge(path.get(i - 1), path.get(i), i);
+            }
+        }
+        LayoutEngine<Point, Integer> engine = new LayoutEngine<>(graph);
+        List<Consumer<LayoutEngine<Point, Integer>>> changes = new ArrayList<>();
+        changes.add(layout -> layout.setRepulsionMode(RepulsionMode.BARNES_HUT));
+        changes.add(layout -> layout.setBarnesHutTheta(0.5));
+        changes.add(layout -> layout.setRepulsionMode(RepulsionMode.GRID));
+        changes.add(layout -> layout.setCutoffRadius(300));
+        changes.add(layout -> layout.setRepulsionMode(RepulsionMode.FMM));
+        changes.add(layout -> layout.setMultipoleOrder(6));
+        changes.add(layout -> layout.setRepulsionMode(RepulsionMode.EXACT));
+        changes.add(layout -> layout.setVectorizedRepulsion(true));
+        // A settled layout is simulated again whenever the forces change, until it settles under the new ones
+        for (Consumer<LayoutEngine<Point, Integer>> change : changes) {
+            for (int step = 0; step < 5000 && !engine.isConverged(); step++) {
+                engine.simulateSingleStep(null);
+            }
+            assertTrue(engine.isConverged());
+            change.accept(engine);
+            assertTrue(!engine.isConverged());
+            assertEquals(-1, engine.getConvergedStep());
+        }
+    }
+
+    @Test
+    public void coolingScheduleTest() {
+        SimpleGraph<Point, Integer> graph = new SimpleGraph<>();
+        Graph.Vertex<Point> first = graph.addVertex(new Point("first"));
+        Graph.Vertex<Point> second = graph.addVertex(new Point("second"));
+        graph.addEdge(first, second, 0);
+        for (CoolingSchedule schedule : CoolingSchedule.values()) {
+            LayoutEngine<Point, Integer> engine = new LayoutEngine<>();
+            engine.setSeed(42);
+            engine.setInitialLayout(null);
+            engine.setGraph(graph);
+            engine.setCoolingSchedule(schedule);
+            engine.setLocation(first, 0, 0);
+            engine.setLocation(second, 1010, 0);
+            int a = engine.indexOf(first);
+            int b = engine.indexOf(second);
+            double initial = engine.getTemperature();
+            double lastEnergy = Double.POSITIVE_INFINITY;
+            int falls = 0;                  // steps in a row that lowered the force energy since the last growth
+            int rises = 0;
+            int drops = 0;
+            for (int step = 0; step < 600; step++) {
+                if (step == 300) {
+                    // Moving a node away once the layout cooled down heats it up a bit, the approach then only lowers
+                    // the energy
+                    engine.setLocation(second, engine.getX(a) + 1010, engine.getY(a));
+                    lastEnergy = Double.POSITIVE_INFINITY;
+                    falls = 0;
+                }
+                Point2D from = new Point2D(engine.getX(a), engine.getY(a));
+                Point2D to = new Point2D(engine.getX(b), engine.getY(b));
+                Point2D force = FxMath.repellingForce(from, to, LayoutEngine.REPULSION_SCALE).add(
+                        FxMath.attractiveForce(from, to, 2, LayoutEngine.SPRING_FORCE, LayoutEngine.SPRING_SCALE));
+                double energy = 2 * force.dotProduct(force);
+                boolean fell = energy < lastEnergy;
+                falls = fell ? falls + 1 : 0;
+                lastEnergy = energy;
+                double temperature = engine.getTemperature();
+                engine.simulateSingleStep(null);
+                Point2D moved = new Point2D(engine.getX(a), engine.getY(a)).subtract(from);
+                double cooled = engine.getTemperature();
+                if (schedule == CoolingSchedule.NONE) {
+                    // Nodes move by their force times the animation speed, and the temperature is left alone
+                    assertEquals(force.getX() * LayoutEngine.ANIMATION_SPEED, moved.getX(), 1e-9);
+                    assertEquals(force.getY() * LayoutEngine.ANIMATION_SPEED, moved.getY(), 1e-9);
+                    assertEquals(initial, cooled, 0);
+                    continue;
+                }
+                // Nodes move by the temperature along their force
+                assertEquals(temperature, moved.magnitude(), 1e-9);
+                assertEquals(0, moved.crossProduct(force).getZ(), 1e-6 * force.magnitude());
+                assertTrue(moved.dotProduct(force) > 0);
+                if (schedule == CoolingSchedule.GLOBAL) {
+                    assertTrue(cooled < temperature);
+                } else if (cooled > temperature) {
+                    // Hu's step length only grows after several steps in a row lowered the energy, never past the start
+                    assertTrue(falls > 1);
+                    assertTrue(cooled <= initial);
+                    falls = 0;
+                    rises++;
+                } else {
+                    // and shrinks after any step that did not
+                    assertEquals(!fell, cooled < temperature);
+                    if (!fell) {
+                        drops++;
+                    }
+                }
+            }
+            if (schedule == CoolingSchedule.ADAPTIVE) {
+                assertTrue(rises > 0);
+                assertTrue(drops > 0);
+            }
+        }
+    }
+
+    @Test
+    public void stressLayoutTest() {
+        SimpleGraph<Point, Integer> graph = new SimpleGraph<>();
+        List<Graph.Vertex<Point>> path = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            path.add(graph.addVertex(new Point("p" + i)));
+            if (i > 0) {
+                graph.addEdge(path.get(i - 1), path.get(i), i);
+            }
+        }
+        // A path can be laid out with every node distance matching its graph distance, with or without pivots
+        for (int pivots : new int[]{0, 3}) {
+            LayoutEngine<Point, Integer> engine = new LayoutEngine<>(graph);
+            StressLayout layout = new StressLayout();
+            layout.setPivots(pivots);
+            layout.setEdgeLength(100);
+            layout.setIterations(1000, 1e-9);
+            layout.apply(engine);
+            for (int i = 0; i < path.size(); i++) {
+                for (int j = i + 1; j < path.size(); j++) {
+                    int a = engine.indexOf(path.get(i));
+                    int b = engine.indexOf(path.get(j));
+                    double distance = Math.hypot(engine.getX(a) - engine.getX(b), engine.getY(a) - engine.getY(b));
+                    assertEquals(100 * (j - i), distance, 5);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void pivotMdsTest() {
+        SimpleGraph<Point, Integer> graph = new SimpleGraph<>();
+        List<Graph.Vertex<Point>> path = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            path.add(graph.addVertex(new Point("p" + i)));
+            if (i > 0) {
+                graph.addEdge(path.get(i - 1), path.get(i), i);
+            }
+        }
+        LayoutEngine<Point, Integer> engine = new LayoutEngine<>();
+        engine.setInitialLayout(null);
+        engine.setGraph(graph);
+        PivotMds layout = new PivotMds();
+        layout.setEdgeLength(100);
+        layout.apply(engine);
+        // Path distances are euclidean, so the path gets laid out as a straight line, up to the jitter
+        int first = engine.indexOf(path.get(0));
+        int last = engine.indexOf(path.get(path.size() - 1));
+        double length = Math.hypot(engine.getX(first) - engine.getX(last), engine.getY(first) - engine.getY(last));
+        assertEquals(900, length, 20);
+    }
+
+    @Test
+    public void multilevelLayoutTest() {
+        int side = 30;
+        SimpleGraph<Point, Integer> graph = new SimpleGraph<>();
+        List<Graph.Vertex<Point>> grid = new ArrayList<>();
+        List<int[]> edges = new ArrayList<>();
+        for (int row = 0; row < side; row++) {
+            for (int column = 0; column < side; column++) {
+                int node = grid.size();
+                grid.add(graph.addVertex(new Point("p" + row + "_" + column)));
+                if (column > 0) {
+                    graph.addEdge(grid.get(node - 1), grid.get(node), edges.size());
+                    edges.add(new int[]{node - 1, node});
+                }
+                if (row > 0) {
+                    graph.addEdge(grid.get(node - side), grid.get(node), edges.size());
+                    edges.add(new int[]{node - side, node});
+                }
+            }
+        }
+        LayoutEngine<Point, Integer> engine = new LayoutEngine<>();
+        engine.setSeed(7);
+        engine.setInitialLayout(null);
+        engine.setGraph(graph);
+        int spawnCrossings = countCrossings(engine, grid, edges);
+
+        MultilevelLayout layout = new MultilevelLayout();
+        layout.apply(engine);
+        int[] sizes = layout.getLevelSizes();
+        assertEquals(grid.size(), sizes[0]);
+        assertTrue(sizes.length > 2);
+        for (int level = 1; level < sizes.length; level++) {
+            assertTrue(sizes[level] < sizes[level - 1]);
+        }
+        assertFiniteCoordinates(engine);
+        // Coarse levels fix the overall shape of the grid, so very few of the spawn crossings remain
+        int multilevelCrossings = countCrossings(engine, grid, edges);
+        assertTrue(multilevelCrossings * 100 < spawnCrossings);
+
+        // A flat simulation given more steps than every level together still leaves the spawn tangled
+        LayoutEngine<Point, Integer> flat = new LayoutEngine<>();
+        flat.setSeed(7);
+        flat.setInitialLayout(null);
+        flat.setGraph(graph);
+        for (int step = 0; step < 700; step++) {
+            flat.simulateSingleStep(null);
+        }
+        assertTrue(multilevelCrossings * 10 < countCrossings(flat, grid, edges));
+
+        // Every level of a larger graph shrinks by at least a quarter, down to a small coarsest level
+        SimpleGraph<Point, Integer> path = new SimpleGraph<>();
+        Graph.Vertex<Point> previous = path.addVertex(new Point("q0"));
+        for (int i = 1; i < 5000; i++) {
+            Graph.Vertex<Point> vertex = path.addVertex(new Point("q" + i));
+            path.addEdge(previous, vertex, i);
+            previous = vertex;
+        }
+        engine = new LayoutEngine<>();
+        engine.setInitialLayout(null);
+        engine.setGraph(path);
+        layout.setSteps(50, 10);
+        layout.apply(engine);
+        sizes = layout.getLevelSizes();
+        assertEquals(5000, sizes[0]);
+        assertTrue(sizes[sizes.length - 1] <= 50);
+        for (int level = 1; level < sizes.length; level++) {
+            assertTrue(sizes[level] <= 0.75 * sizes[level - 1]);
+        }
+        assertFiniteCoordinates(engine);
+
+        // Isolated nodes, several components and graphs too small to be coarsened are laid out too
+        for (int size : new int[]{1, 2, 3, 120}) {
+            SimpleGraph<Point, Integer> small = new SimpleGraph<>();
+            List<Graph.Vertex<Point>> vertices = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                vertices.add(small.addVertex(new Point("p" + i)));
+                if (i % 3 != 0) {
+                    small.addEdge(vertices.get(i - 1), vertices.get(i), i);
+                }
+            }
+            engine = new LayoutEngine<>();
+            engine.setInitialLayout(null);
+            engine.setGraph(small);
+            layout.apply(engine);
+            assertEquals(size, layout.getLevelSizes()[0]);
+            assertEquals(size > 50, layout.getLevelSizes().length > 1);
+            assertFiniteCoordinates(engine);
+        }
+    }
+
+    private static void assertFiniteCoordinates(LayoutEngine<?, ?> engine) {
+        for (int i = 0; i < engine.vertexCount(); i++) {
+            assertTrue(Double.isFinite(engine.getX(i)));
+            assertTrue(Double.isFinite(engine.getY(i)));
+        }
+    }
+
+    /**
+     * Counts the pairs of edges without common nodes which cross each other.
+     */
+    private static int countCrossings(LayoutEngine<Point, Integer> engine, List<Graph.Vertex<Point>> vertices,
+                                      List<int[]> edges) {
+        double[] x = new double[vertices.size()];
+        double[] y = new double[vertices.size()];
+        for (int i = 0; i < vertices.size(); i++) {
+            x[i] = engine.getX(engine.indexOf(vertices.get(i)));
+            y[i] = engine.getY(engine.indexOf(vertices.get(i)));
+        }
+        int crossings = 0;
+        for (int e = 0; e < edges.size(); e++) {
+            int a = edges.get(e)[0];
+            int b = edges.get(e)[1];
+            for (int f = e + 1; f < edges.size(); f++) {
+                int c = edges.get(f)[0];
+                int d = edges.get(f)[1];
+                if (a == c || a == d || b == c || b == d) {
+                    continue;
+                }
+                if (side(x, y, a, b, c) != side(x, y, a, b, d) && side(x, y, c, d, a) != side(x, y, c, d, b)) {
+                    crossings++;
+                }
+            }
+        }
+        return crossings;
+    }
+
+    private static boolean side(double[] x, double[] y, int from, int to, int point) {
+        return (x[to] - x[from]) * (y[point] - y[from]) - (y[to] - y[from]) * (x[point] - x[from]) > 0;
+    }
+
+    @Test
+    public void seededLayoutTest() {
+        SimpleGraph<Point, Integer> graph = new SimpleGraph<>();
+        List<Graph.Vertex<Point>> vertices = new ArrayList<>();
+        for (int i = 0; i < 2100; i++) {
+            vertices.add(graph.addVertex(new Point("p" + i)));
+            if (i > 0) {
+                graph.addEdge(vertices.get(i / 2), vertices.get(i), i);
+            }
+        }
+        // Same seed, same graph and same amount of steps give the same coordinates, bit for bit, even when the
+        // graph is big enough to be simulated in parallel
+        double[][] coordinates = seededCoordinates(graph, vertices, RepulsionMode.BARNES_HUT, new int[]{2, 2});
+        for (int i = 0; i < coordinates[0].length; i++) {
+            assertEquals(coordinates[0][i], coordinates[1][i], 0);
+        }
+        // Splitting the forces among threads doesn't change how each node force is summed
+        for (RepulsionMode mode : RepulsionMode.values()) {
+            coordinates = seededCoordinates(graph, vertices, mode, new int[]{1, 4});
+            for (int i = 0; i < coordinates[0].length; i++) {
+                assertEquals(coordinates[0][i], coordinates[1][i], 0);
+            }
+        }
+    }
+
+    private static double[][] seededCoordinates(SimpleGraph<Point, Integer> graph, List<Graph.Vertex<Point>> vertices,
+                                                RepulsionMode mode, int[] parallelism) {
+        double[][] coordinates = new double[parallelism.length][2 * vertices.size()];
+        for (int run = 0; run < parallelism.length; run++) {
+            LayoutEngine<Point, Integer> engine = new LayoutEngine<>();
+            engine.setSeed(42);
+            engine.setGraph(graph);
+            engine.setRepulsionMode(mode);
+            engine.setParallelism(parallelism[run]);
+            engine.advanceSteps(5);
+            engine.setParallelism(1);
+            for (int i = 0; i < vertices.size(); i++) {
+                coordinates[run][2 * i] = engine.getX(engine.indexOf(vertices.get(i)));
+                coordinates[run][2 * i + 1] = engine.getY(engine.indexOf(vertices.get(i)));
+            }
+        }
+        return coordinates;
+    }
+
+    @Test
+    public void layoutWorkerTest() {
+        SimpleGraph<Point, Integer> graph = new SimpleGraph<>();
+        List<Graph.Vertex<Point>> vertices = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            vertices.add(graph.addVertex(new Point("p" + i)));
+            if (i > 0) {
+                graph.addEdge(vertices.get((i - 1) / 2), vertices.get(i), i);
+            }
+        }
+        LayoutEngine<Point, Integer> engine = new LayoutEngine<>();
+        engine.setSeed(5);
+        engine.setCoolingSchedule(CoolingSchedule.ADAPTIVE);
+        engine.setGraph(graph);
+        LayoutWorker<Point, Integer> worker = new LayoutWorker<>(engine);
+        worker.start();
+        worker.submit(layout -> layout.setLocation(vertices.get(0), 1000, 1000));
+
+        // Draw every new snapshot like the widget does, giving the previous one back, until the settled layout
+        // includes the command. Only three buffers circulate, even though the first call gives none back
+        Set<LayoutSnapshot> buffers = Collections.newSetFromMap(new IdentityHashMap<>());
+        LayoutSnapshot drawn = null;
+        long deadline = System.nanoTime() + 30_000_000_000L;
+        while (System.nanoTime() < deadline
+                && (drawn == null || !drawn.isConverged() || drawn.getCommandCount() < worker.submittedCount())) {
+            LayoutSnapshot newest = worker.poll(drawn);
+            if (newest == null) {
+                Thread.yield();
+                continue;
+            }
+            drawn = newest;
+            buffers.add(drawn);
+            assertTrue(drawn.getStep() > 0);
+        }
+        worker.stop();
+        assertTrue(drawn != null && drawn.isConverged());
+        assertEquals(1, drawn.getCommandCount());
+        assertTrue(buffers.size() <= 3);
+
+        // The engine is handed back where the last snapshot left it
+        assertEquals(engine.getStepCount(), drawn.getStep());
+        for (int i = 0; i < engine.vertexCount(); i++) {
+            assertEquals(engine.getX(i), drawn.getX(i), 0);
+            assertEquals(engine.getY(i), drawn.getY(i), 0);
+        }
+    }
+
+    @Test
+    public void componentPackingTest() {
+        SimpleGraph<Point, Integer> graph = new SimpleGraph<>();
+        List<List<Graph.Vertex<Point>>> components = new ArrayList<>();
+        int edge = 0;
+        for (int c = 0; c < 12; c++) {
+            List<Graph.Vertex<Point>> component = new ArrayList<>();
+            for (int i = 0; i < 1 + c % 5; i++) {
+                component.add(graph.addVertex(new Point("c" + c + "p" + i)));
+                if (i > 0) {
+                    graph.addEdge(component.get(0), component.get(i), edge++);
+                }
+            }
+            components.add(component);
+        }
+        LayoutEngine<Point, Integer> engine = new LayoutEngine<>();
+        engine.setSeed(7);
+        engine.setCoolingSchedule(CoolingSchedule.ADAPTIVE);
+        engine.setGraph(graph);
+        assertEquals(components.size(), engine.componentCount());
+        for (int step = 0; step < 2000 && !engine.isConverged(); step++) {
+            engine.simulateSingleStep(null);
+        }
+        assertTrue(engine.isConverged());
+        // Packed components never overlap
+        double[][] boxes = new double[components.size()][];
+        for (int c = 0; c < components.size(); c++) {
+            double[] box = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+                    Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+            for (Graph.Vertex<Point> vertex : components.get(c)) {
+                int index = engine.indexOf(vertex);
+                box[0] = Math.min(box[0], engine.getX(index));
+                box[1] = Math.min(box[1], engine.getY(index));
+                box[2] = Math.max(box[2], engine.getX(index));
+                box[3] = Math.max(box[3], engine.getY(index));
+            }
+            boxes[c] = box;
+        }
+        for (int a = 0; a < boxes.length; a++) {
+            for (int b = a + 1; b < boxes.length; b++) {
+                assertTrue(boxes[a][2] < boxes[b][0] || boxes[b][2] < boxes[a][0]
+                        || boxes[a][3] < boxes[b][1] || boxes[b][3] < boxes[a][1]);
+            }
+        }
+    }
+
+    @Test
+    public void multipoleTest() {
+        Random random = new Random(11);
+        int size = 2000;
+        double[] x = new double[size];
+        double[] y = new double[size];
+        for (int i = 0; i < size; i++) {
+            // Clustered, which is where Barnes-Hut loses accuracy
+            x[i] = (i % 4) * 1000 + random.nextGaussian() * 50;
+            y[i] = (i % 3) * 800 + random.nextGaussian() * 50;
+        }
+        double[] exactX = new double[size];
+        double[] exactY = new double[size];
+        double norm = 0;
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                if (i != j) {
+                    Point2D force = FxMath.repellingForce(new Point2D(x[i], y[i]), new Point2D(x[j], y[j]), 5000);
+                    exactX[i] += force.getX();
+                    exactY[i] += force.getY();
+                }
+            }
+            norm += exactX[i] * exactX[i] + exactY[i] * exactY[i];
+        }
+        // Higher orders are always more accurate, and order 6 is within 0.1% of the exact forces
+        double previous = Double.POSITIVE_INFINITY;
+        MultipoleTree tree = new MultipoleTree();
+        for (int order : new int[]{0, 2, 4, 6}) {
+            tree.setOrder(order);
+            tree.build(x, y, size);
+            double[] forceX = new double[size];
+            double[] forceY = new double[size];
+            tree.accumulateRepulsion(5000, forceX, forceY);
+            double error = 0;
+            for (int i = 0; i < size; i++) {
+                double dx = forceX[i] - exactX[i];
+                double dy = forceY[i] - exactY[i];
+                error += dx * dx + dy * dy;
+            }
+            error = Math.sqrt(error / norm);
+            assertTrue(error < previous);
+            previous = error;
+        }
+        assertTrue(previous < 1e-3);
+    }
+
+    @Test
+    public void spatialIndexTest() {
+        Random random = new Random(5);
+        int size = 3000;
+        double[][] boxes = new double[size][];
+        SpatialIndex index = new SpatialIndex();
+        index.reset(size);
+        for (int i = 0; i < size; i++) {
+            double x = random.nextDouble() * 10000;
+            double y = random.nextDouble() * 10000;
+            // Mostly points, some short edges and a few spanning most of the space
+            double width = i % 3 == 0 ? 0 : i % 50 == 0 ? random.nextDouble() * 8000 : random.nextDouble() * 300;
+            double height = i % 3 == 0 ? 0 : i % 50 == 0 ? random.nextDouble() * 8000 : random.nextDouble() * 300;
+            boxes[i] = new double[]{x, y, x + width, y + height};
+            index.setBox(i, x, y, x + width, y + height);
+        }
+        index.build();
+        int[] result = new int[size];
+        for (int query = 0; query < 100; query++) {
+            double x = random.nextDouble() * 12000 - 1000;
+            double y = random.nextDouble() * 12000 - 1000;
+            double side = random.nextDouble() * 3000;
+            List<Integer> expected = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                if (boxes[i][0] <= x + side && boxes[i][2] >= x && boxes[i][1] <= y + side && boxes[i][3] >= y) {
+                    expected.add(i);
+                }
+            }
+            int found = index.query(x, y, x + side, y + side, result);
+            assertEquals(expected.size(), found);
+            for (int k = 0; k < found; k++) {
+                assertEquals((int) expected.get(k), result[k]);
+            }
+        }
+    }
+
+    @Test
+    public void animationParkingTest() {
+        AnimationState animation = new AnimationState();
+        animation.wake(0);
+        assertTrue(!animation.park(false, 0));
+        assertTrue(animation.park(true, 0));
+        assertTrue(animation.isParked());
+
+        // A command was sent to the simulation thread, the settled snapshot drawn before it does not show it
+        animation.wake(1);
+        assertTrue(!animation.isParked());
+        assertTrue(!animation.park(true, 0));
+        // The simulation ran it and is moving again
+        assertTrue(!animation.park(false, 1));
+        assertTrue(animation.park(true, 1));
+
+        // Waking up without new commands, eg. after a selection, only needs the current layout to be drawn
+        animation.wake(1);
+        assertTrue(animation.park(true, 1));
+    }
+
+    @Test
+    public void frameBudgetTest() {
+        // 3ms steps in a 10ms budget, a fourth one would overrun it
+        FrameBudget budget = new FrameBudget(10_000_000, 1);
+        budget.startFrame(1_000_000_000);
+        int steps = 0;
+        while (budget.allowsStep()) {
+            budget.stepDone(1_000_000_000 + 3_000_000L * ++steps);
+        }
+        assertEquals(3, budget.steps());
+
+        // A step over the whole budget still runs once, and only once
+        budget.startFrame(0);
+        assertTrue(budget.allowsStep());
+        budget.stepDone(50_000_000);
+        assertTrue(!budget.allowsStep());
+        assertEquals(1, budget.steps());
+
+        // Steps slowing down are expected to last as long as the last one
+        budget.startFrame(0);
+        budget.stepDone(1_000_000);
+        budget.stepDone(6_000_000);
+        assertTrue(!budget.allowsStep());
+
+        // The minimum is met even without any budget
+        budget = new FrameBudget(0, 3);
+        budget.startFrame(0);
+        while (budget.allowsStep()) {
+            budget.stepDone(budget.steps() + 1);
+        }
+        assertEquals(3, budget.steps());
+    }
+
+    @Test
+    public void levelOfDetailTest() {
+        LevelOfDetail detail = new LevelOfDetail();
+        // Zooming out drops labels at 40 pixels per edge, edge detail at 15 and node detail at 4
+        for (double pixels = 0; pixels < 100; pixels += 0.5) {
+            assertEquals(pixels >= 40, detail.drawsLabels(pixels));
+            assertEquals(pixels >= 15, detail.drawsEdgeDetail(pixels));
+            assertEquals(pixels < 4, detail.drawsDots(pixels));
+        }
+        // Graphs without edges are always drawn in full
+        assertTrue(detail.drawsLabels(Double.POSITIVE_INFINITY));
+        assertTrue(detail.drawsEdgeDetail(Double.POSITIVE_INFINITY));
+        assertTrue(!detail.drawsDots(Double.POSITIVE_INFINITY));
+
+        // Thresholds of 0 keep every detail at any zoom
+        detail.setLabelThreshold(0);
+        detail.setEdgeDetailThreshold(0);
+        detail.setNodeDetailThreshold(0);
+        assertTrue(detail.drawsLabels(0));
+        assertTrue(detail.drawsEdgeDetail(0));
+        assertTrue(!detail.drawsDots(0));
+        detail.setNodeDetailThreshold(10);
+        assertTrue(detail.drawsDots(9.9));
+        assertTrue(!detail.drawsDots(10));
+    }
+
+    @Test
+    public void labelSlotsTest() {
+        // Two slots 100 pixels wide, three labels placed per frame
+        LabelSlots slots = new LabelSlots(2, 100, 3);
+        slots.startFrame();
+        assertEquals(LabelSlots.MISSING, slots.find("a", false));
+        assertEquals(0, slots.place("a", false, 50));
+        assertEquals(1, slots.place("b", false, 60));
+        assertEquals(0, slots.find("a", false));
+        assertEquals(50, slots.width(0));
+        // Selected labels look different, and every slot holds a label drawn in this frame
+        assertEquals(LabelSlots.MISSING, slots.find("a", true));
+        assertEquals(LabelSlots.MISSING, slots.place("a", true, 50));
+        assertTrue(!slots.canPlace());
+
+        // Labels drawn again are reused, the least recently drawn one gives up its slot
+        slots.startFrame();
+        assertTrue(slots.canPlace());
+        assertEquals(0, slots.find("a", false));
+        assertEquals(1, slots.place("c", false, 70));
+        assertEquals(70, slots.width(1));
+        assertEquals(LabelSlots.MISSING, slots.find("b", false));
+        assertEquals(0, slots.find("a", false));
+
+        // Labels too wide for a slot are remembered, and take no slot
+        assertEquals(LabelSlots.TOO_WIDE, slots.place("long", false, 101));
+        slots.startFrame();
+        assertEquals(LabelSlots.TOO_WIDE, slots.find("long", false));
+        assertEquals(0, slots.find("a", false));
+        assertEquals(1, slots.find("c", false));
+    }
+
+    @Test
+    public void viewCullingTest() {
+        // Grid of nodes 10 units apart, each joined to its right neighbour, every fifth pair by three edges
+        int columns = 100;
+        int size = columns * 60;
+        double[] x = new double[size];
+        double[] y = new double[size];
+        for (int i = 0; i < size; i++) {
+            x[i] = i % columns * 10;
+            y[i] = i / columns * 10;
+        }
+        int spots = size - size / columns;
+        int[] ends = new int[2 * spots];
+        int[] edgeCounts = new int[spots];
+        int spot = 0;
+        for (int i = 0; i < size; i++) {
+            if (i % columns != columns - 1) {
+                ends[2 * spot] = i;
+                ends[2 * spot + 1] = i + 1;
+                edgeCounts[spot++] = i % 5 == 0 ? 3 : 1;
+            }
+        }
+        ViewCulling culling = new ViewCulling();
+        culling.index(x, y, size, ends, edgeCounts, spots);
+
+        // Zoomed into the top left corner of a 400x300 canvas
+        double zoom = 4, shiftX = -100, shiftY = -60, width = 400, height = 300;
+        double margin = ViewCulling.MARGIN;
+        int nodes = culling.cullNodes(zoom, shiftX, shiftY, width, height);
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            double canvasX = x[i] * zoom + shiftX;
+            double canvasY = y[i] * zoom + shiftY;
+            if (canvasX >= -margin && canvasX <= width + margin && canvasY >= -margin && canvasY <= height + margin) {
+                expected.add(i);
+            }
+        }
+        assertEquals(expected.size(), nodes);
+        for (int k = 0; k < nodes; k++) {
+            assertEquals((int) expected.get(k), culling.visibleNodes()[k]);
+        }
+        assertTrue(nodes < size / 10);
+
+        // Every spot that comes near the canvas is found, and far fewer than all of them
+        int found = culling.cullEdgeSpots(zoom, shiftX, shiftY, width, height);
+        boolean[] visible = new boolean[spots];
+        for (int k = 0; k < found; k++) {
+            visible[culling.visibleEdgeSpots()[k]] = true;
+        }
+        for (int s = 0; s < spots; s++) {
+            double bend = edgeCounts[s] > 1 ? edgeCounts[s] * 5 + 10 : 0;
+            double left = Math.min(x[ends[2 * s]], x[ends[2 * s + 1]]) - bend;
+            double right = Math.max(x[ends[2 * s]], x[ends[2 * s + 1]]) + bend;
+            double top = y[ends[2 * s]] - bend;
+            double bottom = y[ends[2 * s]] + bend;
+            boolean near = right * zoom + shiftX >= -margin && left * zoom + shiftX <= width + margin
+                    && bottom * zoom + shiftY >= -margin && top * zoom + shiftY <= height + margin;
+            assertEquals(near, visible[s]);
+        }
+        assertTrue(found < spots / 10);
+    }
 }
@@ -0,0 +1,69 @@
+/*
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package testing;
+
+import random.Point;
+import tads.Graph;
+import tads.SimpleGraph;
+import widget.LayoutEngine;
+import widget.RepulsionMode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the duration of exact simulation steps computed by the scalar and the vectorized repulsion kernels.
+ * Both engines start every round from the same coordinates. Run with the amount of nodes as an optional argument.
+ */
+public class RepulsionBenchmark {
+
+    private static final int ROUNDS = 5;
+    private static final int STEPS = 10;
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 4000;
+        SimpleGraph<Point, Integer> graph = new SimpleGraph<>();
+        List<Graph.Vertex<Point>> vertices = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            vertices.add(graph.addVertex(new Point("p" + i)));
+            if (i > 0) {
+                graph.addEdge(vertices.get(i - 1), vertices.get(i), i);
+            }
+        }
+        LayoutEngine<Point, Integer> scalar = new LayoutEngine<>(graph);
+        LayoutEngine<Point, Integer> vectorized = new LayoutEngine<>(graph);
+        scalar.setRepulsionMode(RepulsionMode.EXACT);
+        vectorized.setRepulsionMode(RepulsionMode.EXACT);
+        vectorized.setVectorizedRepulsion(true);
+
+        double[] x = new double[size];
+        double[] y = new double[size];
+        for (int round = 1; round <= ROUNDS; round++) {
+            scalar.copyCoordinates(x, y);
+            vectorized.setCoordinates(x, y);
+            double scalarTime = time(scalar);
+            double vectorizedTime = time(vectorized);
+            System.out.printf("Round %d: scalar %.2f ms/step, vectorized %.2f ms/step, speedup %.2fx%n",
+                    round, scalarTime, vectorizedTime, scalarTime / vectorizedTime);
+        }
+    }
+
+    private static double time(LayoutEngine<?, ?> engine) {
+        long start = System.nanoTime();
+        engine.advanceSteps(STEPS);
+        return (System.nanoTime() - start) / 1e6 / STEPS;
+    }
+}